@@ -8,8 +8,11 @@ import java.util.function.Predicate;
  * @author peter
  */
 abstract class AbstractDataStructure implements GenerationEnvironment {
+  static final String LAZY_ITEM_DURING_GENERATION = "Lazy collections can only be consumed after the whole value has been generated, outside of generators";
   protected final StructureNode node;
   protected final int sizeHint;
+  /** Set on the root structure, see {@link #generateLazyItem} */
+  boolean generationFinished;
 
   AbstractDataStructure(StructureNode node, int sizeHint) {
     this.node = node;
@@ -17,7 +20,7 @@ abstract class AbstractDataStructure implements GenerationEnvironment {
   }
 
   int childSizeHint() {
-    return Math.max(1, sizeHint - 1);
+    return Math.max(1, getSizeHint() - 1);
   }
 
   @Override
@@ -27,6 +30,15 @@ abstract class AbstractDataStructure implements GenerationEnvironment {
 
   abstract int drawInt(@NotNull IntDistribution distribution);
 
+  abstract long drawLong(@NotNull LongDistribution distribution);
+
+  /** Draws an array in bulk, recording it as a single {@link ArrayData} */
+  abstract byte[] drawBytes(@NotNull IntDistribution length);
+
+  abstract int[] drawInts(@NotNull IntDistribution length, @NotNull IntDistribution elements);
+
+  abstract long[] drawLongs(@NotNull IntDistribution length, @NotNull LongDistribution elements);
+
   int suggestCollectionSize() {
     return drawInt(IntDistribution.uniform(0, getSizeHint()));
   }
@@ -35,5 +47,33 @@ abstract class AbstractDataStructure implements GenerationEnvironment {
 
   abstract <T> T generateConditional(@NotNull Generator<T> generator, @NotNull Predicate<? super T> condition);
 
+  /**
+   * Generates values until one is accepted by the given predicate (which may store it), like {@link #generateConditional},
+   * but gives up after the given number of attempts, without recording anything nor counting the attempts in statistics.
+   * @return whether a value has been accepted
+   */
+  abstract <T> boolean generateAccepted(@NotNull Generator<T> generator, @NotNull Predicate<? super T> acceptor, int attempts);
+
+  /**
+   * Records the actual size of a list-like structure, when fewer items than initially drawn could be generated.
+   * @return false if that size isn't valid for the distribution the size was drawn from
+   */
+  abstract boolean changeCollectionSize(int size);
+
   abstract void changeKind(StructureKind kind);
+
+  /** Called on the root structure when the value has been generated, so that lazy collections can be consumed */
+  void finishGeneration() {
+    generationFinished = true;
+  }
+
+  /** Called when a lazy collection is generated as a part of the value */
+  void lazyCollectionGenerated() {
+  }
+
+  /**
+   * Generates an item of a lazy collection when the property consumes it. Items are recorded in a {@link StructureKind#STREAM} node
+   * at the end of the root, in the order they're consumed, so that the recorded data stays in the order of drawing and can be serialized.
+   */
+  abstract <T> T generateLazyItem(@NotNull Generator<T> generator);
 }
@@ -0,0 +1,199 @@
+package org.jetbrains.jetCheck;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.reflect.Array;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongConsumer;
+
+/**
+ * A primitive array ({@code byte[]}, {@code int[]} or {@code long[]}) drawn in bulk and recorded as a single leaf, instead of
+ * a sub-structure per element. It's serialized as its length followed by the elements, which is what the bulk draws
+ * of a {@link IntSource} read by default. The array is shrunk as a whole: first it's truncated to the minimal length,
+ * then ranges of elements are deleted and then zeroed (filled with the simplest element, e.g. the valid one closest to zero),
+ * each range galloping from the end like in {@link RemoveListRange}.
+ */
+class ArrayData extends StructureElement {
+  /** The packed elements, never exposed to generators, which get copies */
+  final Object array;
+  final IntDistribution lengthDistribution;
+  private final long simplest;
+
+  private ArrayData(NodeId id, Object array, IntDistribution lengthDistribution, long simplest) {
+    super(id);
+    this.array = array;
+    this.lengthDistribution = lengthDistribution;
+    this.simplest = simplest;
+  }
+
+  static ArrayData ofBytes(NodeId id, byte[] array, IntDistribution lengthDistribution) {
+    return new ArrayData(id, array, lengthDistribution, 0);
+  }
+
+  static ArrayData ofInts(NodeId id, int[] array, IntDistribution lengthDistribution, IntDistribution elements) {
+    long simplest = elements instanceof CodePointDistribution ? ((CodePointDistribution)elements).getSimplest() :
+                    elements.isValidValue(0) ? 0 : elements.getMin() > 0 ? elements.getMin() : elements.getMax();
+    return new ArrayData(id, array, lengthDistribution, simplest);
+  }
+
+  static ArrayData ofLongs(NodeId id, long[] array, IntDistribution lengthDistribution, LongDistribution elements) {
+    long simplest = elements.isValidValue(0) ? 0 : elements.getMin() > 0 ? elements.getMin() : elements.getMax();
+    return new ArrayData(id, array, lengthDistribution, simplest);
+  }
+
+  int length() {
+    return Array.getLength(array);
+  }
+
+  long get(int index) {
+    if (array instanceof byte[]) return ((byte[])array)[index];
+    if (array instanceof int[]) return ((int[])array)[index];
+    return ((long[])array)[index];
+  }
+
+  private ArrayData withArray(Object newArray) {
+    return new ArrayData(id, newArray, lengthDistribution, simplest);
+  }
+
+  /** @return a copy of the array without the elements in the given range */
+  private Object delete(int start, int end) {
+    int length = length();
+    Object result = Array.newInstance(array.getClass().getComponentType(), length - (end - start));
+    System.arraycopy(array, 0, result, 0, start);
+    System.arraycopy(array, end, result, start, length - end);
+    return result;
+  }
+
+  /** @return a copy of the array with the elements in the given range replaced by the simplest one */
+  private Object zero(int start, int end) {
+    int length = length();
+    Object result = Array.newInstance(array.getClass().getComponentType(), length);
+    System.arraycopy(array, 0, result, 0, length);
+    if (result instanceof byte[]) {
+      Arrays.fill((byte[])result, start, end, (byte)simplest);
+    }
+    else if (result instanceof int[]) {
+      Arrays.fill((int[])result, start, end, (int)simplest);
+    }
+    else {
+      Arrays.fill((long[])result, start, end, simplest);
+    }
+    return result;
+  }
+
+  private boolean isZero(int start, int end) {
+    for (int i = start; i < end; i++) {
+      if (get(i) != simplest) return false;
+    }
+    return true;
+  }
+
+  @Nullable
+  @Override
+  ShrinkStep shrink() {
+    int length = length();
+    int minLength = Math.max(0, lengthDistribution.getMin());
+    if (length > minLength && lengthDistribution.isValidValue(minLength)) {
+      ArrayData truncated = withArray(delete(minLength, length));
+      return ShrinkStep.create(id, truncated, __ -> truncated.zeroRange(minLength, minLength), () -> deleteRange(length, 1));
+    }
+    return zeroRange(length, length);
+  }
+
+  /** Tries deleting {@code count} elements before {@code end}, moving to the start of the array */
+  @Nullable
+  private ShrinkStep deleteRange(int end, int count) {
+    if (end == 0) return zeroRange(length(), length());
+
+    int start = end - count;
+    if (!lengthDistribution.isValidValue(length() - count)) {
+      return count > 1 ? deleteRange(end, count / 2) : zeroRange(length(), length());
+    }
+    ArrayData smaller = withArray(delete(start, end));
+    return ShrinkStep.create(id, smaller,
+                             __ -> smaller.deleteRange(start, Math.min(count * 2, start)),
+                             () -> count > 1 ? deleteRange(end, count / 2) : deleteRange(end - 1, Math.min(1, end - 1)));
+  }
+
+  /** Tries zeroing {@code count} elements before {@code end}, moving to the start of the array */
+  @Nullable
+  private ShrinkStep zeroRange(int end, int count) {
+    if (end == 0) return null;
+
+    int start = end - count;
+    if (isZero(start, end)) {
+      return zeroRange(start, Math.min(Math.max(count, 1) * 2, start));
+    }
+    ArrayData zeroed = withArray(zero(start, end));
+    return ShrinkStep.create(id, zeroed,
+                             __ -> zeroed.zeroRange(start, Math.min(count * 2, start)),
+                             () -> count > 1 ? zeroRange(end, count / 2) : zeroRange(end - 1, Math.min(1, end - 1)));
+  }
+
+  @NotNull
+  @Override
+  ArrayData replace(NodeId id, StructureElement replacement) {
+    return this.id == id ? (ArrayData)replacement : this;
+  }
+
+  @Nullable
+  @Override
+  StructureElement findChildById(NodeId id) {
+    return id == this.id ? this : null;
+  }
+
+  @Override
+  void serialize(LongConsumer out) {
+    int length = length();
+    out.accept(length);
+    for (int i = 0; i < length; i++) {
+      out.accept(get(i));
+    }
+  }
+
+  @Override
+  long fingerprint() {
+    int length = length();
+    long hash = length;
+    for (int i = 0; i < length; i++) {
+      hash = hash * 0x100000001B3L + get(i);
+    }
+    return hash;
+  }
+
+  @Override
+  StructureElement removeUnneeded(Set<NodeId> unneeded) {
+    return this;
+  }
+
+  @Override
+  ArrayData renumber(AtomicInteger counter) {
+    return new ArrayData(id.renumbered(counter), array, lengthDistribution, simplest);
+  }
+
+  @Override
+  public String toString() {
+    int length = length();
+    StringBuilder sb = new StringBuilder("#[");
+    for (int i = 0; i < Math.min(length, 16); i++) {
+      if (i > 0) sb.append(", ");
+      sb.append(get(i));
+    }
+    if (length > 16) sb.append(", ... (").append(length).append(" total)");
+    return sb.append("]").toString();
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    return obj instanceof ArrayData && Objects.deepEquals(array, ((ArrayData)obj).array);
+  }
+
+  @Override
+  public int hashCode() {
+    return Long.hashCode(fingerprint());
+  }
+}
@@ -5,6 +5,7 @@ import java.util.function.ToIntFunction;
 
 class BoundedIntDistribution implements IntDistribution {
   static final IntDistribution ALL_INTS = IntDistribution.uniform(Integer.MIN_VALUE, Integer.MAX_VALUE);
+  static final IntDistribution ALL_BYTES = IntDistribution.uniform(Byte.MIN_VALUE, Byte.MAX_VALUE);
   private final int min;
   private final int max;
   private final ToIntFunction<Random> producer;
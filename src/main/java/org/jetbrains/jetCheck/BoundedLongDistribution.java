@@ -0,0 +1,40 @@
+package org.jetbrains.jetCheck;
+
+import java.util.Random;
+import java.util.function.ToLongFunction;
+
+class BoundedLongDistribution implements LongDistribution {
+  static final LongDistribution ALL_LONGS = LongDistribution.uniform(Long.MIN_VALUE, Long.MAX_VALUE);
+  private final long min;
+  private final long max;
+  private final ToLongFunction<Random> producer;
+
+  BoundedLongDistribution(long min, long max, ToLongFunction<Random> producer) {
+    if (min > max) throw new IllegalArgumentException(min + ">" + max);
+    this.min = min;
+    this.max = max;
+    this.producer = producer;
+  }
+
+  public long getMin() {
+    return min;
+  }
+
+  public long getMax() {
+    return max;
+  }
+
+  @Override
+  public long generateLong(Random random) {
+    long l = producer.applyAsLong(random);
+    if (l < min || l > max) {
+      throw new IllegalStateException("Long out of bounds produced by " + producer + ": " + l + " not in [" + min + ", " + max + "]");
+    }
+    return l;
+  }
+
+  @Override
+  public boolean isValidValue(long l) {
+    return l >= min && l <= max;
+  }
+}
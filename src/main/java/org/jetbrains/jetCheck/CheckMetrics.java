@@ -0,0 +1,143 @@
+package org.jetbrains.jetCheck;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A {@link StatusListener} which counts the events of property checks and measures their latencies.
+ * It's thread-safe and cheap enough to stay enabled in regular test runs. Create one per property to get
+ * per-property metrics, or share one between several checks to get the totals:
+ * <pre>{@code
+ * CheckMetrics metrics = new CheckMetrics();
+ * PropertyChecker.customized().withStatusListener(metrics).forAll(generator, property);
+ * report(metrics.snapshot());
+ * }</pre>
+ */
+public final class CheckMetrics implements StatusListener {
+  private final LongAdder iterations = new LongAdder();
+  private final LongAdder unsatisfiedDiscards = new LongAdder();
+  private final LongAdder duplicateDiscards = new LongAdder();
+  private final LongAdder counterExamples = new LongAdder();
+  private final LongAdder acceptedShrinks = new LongAdder();
+  private final LongAdder replayFailures = new LongAdder();
+  private final LatencyHistogram iterationLatency = new LatencyHistogram();
+  private final LatencyHistogram shrinkAttemptLatency = new LatencyHistogram();
+
+  @Override
+  public void iterationFinished(int iterationNumber, long durationNanos) {
+    iterations.increment();
+    iterationLatency.record(durationNanos);
+  }
+
+  @Override
+  public void generationDiscarded(int iterationNumber, @NotNull DiscardReason reason) {
+    (reason == DiscardReason.DUPLICATE ? duplicateDiscards : unsatisfiedDiscards).increment();
+  }
+
+  @Override
+  public void counterExampleFound(int iterationNumber) {
+    counterExamples.increment();
+  }
+
+  @Override
+  public void shrinkAttempted(boolean accepted, long durationNanos) {
+    if (accepted) {
+      acceptedShrinks.increment();
+    }
+    shrinkAttemptLatency.record(durationNanos);
+  }
+
+  @Override
+  public void replayFailed(@NotNull Throwable reason) {
+    replayFailures.increment();
+  }
+
+  /** @return the number of completed iterations, i.e. values generated and checked */
+  public long getIterationCount() {
+    return iterations.sum();
+  }
+
+  /** @return the number of generated values thrown away for the given reason */
+  public long getDiscardCount(@NotNull DiscardReason reason) {
+    return (reason == DiscardReason.DUPLICATE ? duplicateDiscards : unsatisfiedDiscards).sum();
+  }
+
+  /** @return the fraction of generated values which were thrown away, between 0 and 1 */
+  public double getDiscardRate() {
+    long discarded = getDiscardCount(DiscardReason.DUPLICATE) + getDiscardCount(DiscardReason.CONDITION_NOT_SATISFIED);
+    long total = discarded + getIterationCount();
+    return total == 0 ? 0 : (double)discarded / total;
+  }
+
+  /** @return the number of falsified properties */
+  public long getCounterExampleCount() {
+    return counterExamples.sum();
+  }
+
+  /** @return the number of property checks on shrunk examples */
+  public long getShrinkAttemptCount() {
+    return shrinkAttemptLatency.getCount();
+  }
+
+  /** @return the number of shrunk examples which still failed the property */
+  public long getAcceptedShrinkCount() {
+    return acceptedShrinks.sum();
+  }
+
+  /** @return the number of failed generator re-runs on recorded or shrunk data */
+  public long getReplayFailureCount() {
+    return replayFailures.sum();
+  }
+
+  /** @return the durations of iterations, see {@link StatusListener#iterationFinished} */
+  @NotNull
+  public LatencyHistogram getIterationLatency() {
+    return iterationLatency;
+  }
+
+  /** @return the durations of shrinking attempts, see {@link StatusListener#shrinkAttempted} */
+  @NotNull
+  public LatencyHistogram getShrinkAttemptLatency() {
+    return shrinkAttemptLatency;
+  }
+
+  /**
+   * @return the current values of all metrics in a form suitable for machine processing (e.g. JSON serialization),
+   * durations are in nanoseconds
+   */
+  @NotNull
+  public Map<String, Long> snapshot() {
+    Map<String, Long> result = new LinkedHashMap<>();
+    result.put("iterations", getIterationCount());
+    result.put("discarded.unsatisfied", getDiscardCount(DiscardReason.CONDITION_NOT_SATISFIED));
+    result.put("discarded.duplicate", getDiscardCount(DiscardReason.DUPLICATE));
+    result.put("counterExamples", getCounterExampleCount());
+    result.put("shrink.attempts", getShrinkAttemptCount());
+    result.put("shrink.accepted", getAcceptedShrinkCount());
+    result.put("replay.failures", getReplayFailureCount());
+    putLatency(result, "iteration", iterationLatency);
+    putLatency(result, "shrink.attempt", shrinkAttemptLatency);
+    return result;
+  }
+
+  private static void putLatency(Map<String, Long> result, String prefix, LatencyHistogram histogram) {
+    result.put(prefix + ".totalNanos", histogram.getTotalNanos());
+    result.put(prefix + ".p50Nanos", histogram.getPercentileNanos(0.5));
+    result.put(prefix + ".p99Nanos", histogram.getPercentileNanos(0.99));
+    result.put(prefix + ".maxNanos", histogram.getMaxNanos());
+  }
+
+  @Override
+  public String toString() {
+    return "iterations: " + getIterationCount() +
+           ", discard rate: " + String.format(Locale.ROOT, "%.1f%%", getDiscardRate() * 100) +
+           ", counterexamples: " + getCounterExampleCount() +
+           ", shrinking: " + getAcceptedShrinkCount() + " of " + getShrinkAttemptCount() + " accepted" +
+           "\n iteration latency: " + iterationLatency +
+           "\n shrink attempt latency: " + shrinkAttemptLatency;
+  }
+}
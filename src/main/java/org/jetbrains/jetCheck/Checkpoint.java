@@ -0,0 +1,107 @@
+package org.jetbrains.jetCheck;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * The state of a {@link CheckSession} saved to a file to resume the check after the process is interrupted,
+ * see {@link PropertyChecker.Parameters#withCheckpoints} and {@link PropertyChecker.Parameters#resumeFrom}.
+ * It contains the iteration to continue from, the fingerprints of the recently generated values to avoid checking them again,
+ * the generation statistics, and, if a counterexample was being shrunk, the smallest one found so far.
+ */
+class Checkpoint {
+  private static final int MAGIC = 0x4A43_4B50;
+  private static final int VERSION = 1;
+  final long globalSeed;
+  final int iterationNumber;
+  final long iterationSeed;
+  final long[] fingerprints;
+  final GenerationStatistics statistics = new GenerationStatistics();
+  final ValueClassification classification = new ValueClassification();
+  @Nullable final ShrinkState shrinking;
+
+  private Checkpoint(DataInputStream in) throws IOException {
+    if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+      throw new IOException("Not a jetCheck checkpoint of a supported version");
+    }
+    globalSeed = in.readLong();
+    iterationNumber = in.readInt();
+    iterationSeed = in.readLong();
+    fingerprints = new long[in.readInt()];
+    for (int i = 0; i < fingerprints.length; i++) {
+      fingerprints[i] = in.readLong();
+    }
+    statistics.readFrom(in);
+    classification.readFrom(in);
+    shrinking = in.readBoolean() ? new ShrinkState(in) : null;
+  }
+
+  @NotNull
+  static Checkpoint load(Path file) throws IOException {
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+      return new Checkpoint(in);
+    }
+  }
+
+  /**
+   * Saves the session state, replacing the file atomically, so that the previous checkpoint survives if the process is interrupted while saving.
+   * @param iteration the next iteration to perform, or the failed one if {@code failure} is not null
+   * @param failure the counterexample being shrunk, if any
+   */
+  static void save(Path file, CheckSession<?> session, Iteration<?> iteration, @Nullable PropertyFailureImpl<?> failure) throws IOException {
+    Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeLong(session.parameters.globalSeed);
+      out.writeInt(iteration.iterationNumber);
+      out.writeLong(iteration.iterationSeed);
+      long[] fingerprints = session.getGeneratedFingerprints();
+      out.writeInt(fingerprints.length);
+      for (long fingerprint : fingerprints) {
+        out.writeLong(fingerprint);
+      }
+      session.statistics.writeTo(out);
+      session.classification.writeTo(out);
+      out.writeBoolean(failure != null);
+      if (failure != null) {
+        ShrinkState.write(out, failure);
+      }
+    }
+    Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  static class ShrinkState {
+    final int sizeHint;
+    final int totalSteps;
+    final int successfulSteps;
+    final byte[] data;
+
+    ShrinkState(DataInput in) throws IOException {
+      sizeHint = in.readInt();
+      totalSteps = in.readInt();
+      successfulSteps = in.readInt();
+      data = new byte[in.readInt()];
+      in.readFully(data);
+    }
+
+    static void write(DataOutput out, PropertyFailureImpl<?> failure) throws IOException {
+      byte[] data = DataSerializer.serializeBinary(failure.iteration, failure.getMinimalCounterexample().data);
+      out.writeInt(failure.getSizeHint());
+      out.writeInt(failure.getTotalShrinkingExampleCount());
+      out.writeInt(failure.getShrinkingStageCount());
+      out.writeInt(data.length);
+      out.write(data);
+    }
+
+    /** @return the source of the ints of the smallest counterexample found before the checkpoint */
+    DataSerializer.SerializedIntSource createSource() {
+      return DataSerializer.readBinary(new ByteArrayInputStream(data));
+    }
+  }
+}
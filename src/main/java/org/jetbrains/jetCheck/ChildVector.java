@@ -0,0 +1,87 @@
+package org.jetbrains.jetCheck;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * An immutable list of structure children stored in a 32-way trie, so that {@link #with} copies only the path to the changed element
+ * (O(log n)), sharing all the other chunks with the original list. Used by {@link StructureNode#replace}, so that applying a shrink step
+ * to an element of a huge list doesn't copy the whole list.
+ */
+final class ChildVector extends AbstractList<StructureElement> implements RandomAccess {
+  private static final int BITS = 5;
+  private static final int WIDTH = 1 << BITS;
+  private static final int MASK = WIDTH - 1;
+  private final int size;
+  private final int shift;
+  private final Object[] root;
+
+  private ChildVector(int size, int shift, Object[] root) {
+    this.size = size;
+    this.shift = shift;
+    this.root = root;
+  }
+
+  /** @return the given list if it's already a {@link ChildVector}, otherwise a copy of it */
+  static ChildVector of(List<StructureElement> list) {
+    if (list instanceof ChildVector) return (ChildVector)list;
+
+    Object[] level = list.toArray();
+    int shift = 0;
+    while (level.length > WIDTH) {
+      Object[] parents = new Object[(level.length + MASK) >>> BITS];
+      for (int i = 0; i < parents.length; i++) {
+        parents[i] = Arrays.copyOfRange(level, i << BITS, Math.min(level.length, (i + 1) << BITS));
+      }
+      level = parents;
+      shift += BITS;
+    }
+    return new ChildVector(list.size(), shift, level);
+  }
+
+  @Override
+  public StructureElement get(int index) {
+    return (StructureElement)leaf(index)[index & MASK];
+  }
+
+  /** @return a copy of this list with the element at the given index replaced */
+  @NotNull
+  ChildVector with(int index, StructureElement element) {
+    checkIndex(index);
+    return new ChildVector(size, shift, with(root, shift, index, element));
+  }
+
+  private static Object[] with(Object[] node, int level, int index, StructureElement element) {
+    Object[] copy = node.clone();
+    int slot = (index >>> level) & MASK;
+    copy[slot] = level == 0 ? element : with((Object[])node[slot], level - BITS, index, element);
+    return copy;
+  }
+
+  /** @return whether the element at the given index is stored in the same leaf array in both vectors, i.e. that chunk is shared */
+  boolean sharesLeafWith(ChildVector other, int index) {
+    return leaf(index) == other.leaf(index);
+  }
+
+  private Object[] leaf(int index) {
+    checkIndex(index);
+    Object[] node = root;
+    for (int level = shift; level > 0; level -= BITS) {
+      node = (Object[])node[(index >>> level) & MASK];
+    }
+    return node;
+  }
+
+  private void checkIndex(int index) {
+    if (index < 0 || index >= size) throw new IndexOutOfBoundsException(index + " of " + size);
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+}
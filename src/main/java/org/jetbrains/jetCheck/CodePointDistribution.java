@@ -0,0 +1,101 @@
+package org.jetbrains.jetCheck;
+
+import java.util.Random;
+
+/**
+ * Unicode code points from several ranges (both ends inclusive) chosen with the given weights, uniformly within a range.
+ * Surrogate code points are never generated nor accepted, so that the strings built from these code points are well-formed.
+ */
+class CodePointDistribution implements IntDistribution {
+  private final int[] ranges;
+  private final int[] weights;
+  private final int weightSum;
+
+  /**
+   * @param ranges pairs of min and max code points
+   * @param weights the relative probability of each range
+   */
+  CodePointDistribution(int[] ranges, int[] weights) {
+    if (ranges.length != weights.length * 2) throw new IllegalArgumentException("Each range should have a weight");
+    int sum = 0;
+    for (int i = 0; i < weights.length; i++) {
+      int min = ranges[i * 2];
+      int max = ranges[i * 2 + 1];
+      if (min < 0 || max > Character.MAX_CODE_POINT || min > max) {
+        throw new IllegalArgumentException("Invalid code point range: " + min + ".." + max);
+      }
+      if (nonSurrogateCount(min, max) == 0) throw new IllegalArgumentException("Only surrogates in " + min + ".." + max);
+      sum += weights[i];
+    }
+    this.ranges = ranges;
+    this.weights = weights;
+    this.weightSum = sum;
+  }
+
+  static CodePointDistribution range(int min, int max) {
+    return new CodePointDistribution(new int[]{min, max}, new int[]{1});
+  }
+
+  private static int surrogateCount(int min, int max) {
+    int from = Math.max(min, Character.MIN_SURROGATE);
+    int to = Math.min(max, Character.MAX_SURROGATE);
+    return Math.max(0, to - from + 1);
+  }
+
+  private static int nonSurrogateCount(int min, int max) {
+    return max - min + 1 - surrogateCount(min, max);
+  }
+
+  /** @return the code point that shrunk strings are filled with, the minimum of the first range */
+  int getSimplest() {
+    int min = ranges[0];
+    return isSurrogate(min) ? Character.MAX_SURROGATE + 1 : min;
+  }
+
+  private static boolean isSurrogate(int codePoint) {
+    return codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE;
+  }
+
+  @Override
+  public int generateInt(Random random) {
+    int range = 0;
+    for (int value = random.nextInt(weightSum); value >= weights[range]; range++) {
+      value -= weights[range];
+    }
+    int min = ranges[range * 2];
+    int codePoint = min + random.nextInt(nonSurrogateCount(min, ranges[range * 2 + 1]));
+    // skip the surrogates, which are contiguous
+    if (isSurrogate(min)) return codePoint + Character.MAX_SURROGATE + 1 - min;
+    if (min < Character.MIN_SURROGATE && codePoint >= Character.MIN_SURROGATE) {
+      return codePoint + Character.MAX_SURROGATE - Character.MIN_SURROGATE + 1;
+    }
+    return codePoint;
+  }
+
+  @Override
+  public boolean isValidValue(int i) {
+    if (isSurrogate(i)) return false;
+    for (int range = 0; range < weights.length; range++) {
+      if (i >= ranges[range * 2] && i <= ranges[range * 2 + 1]) return true;
+    }
+    return false;
+  }
+
+  @Override
+  public int getMin() {
+    int min = Integer.MAX_VALUE;
+    for (int range = 0; range < weights.length; range++) {
+      min = Math.min(min, ranges[range * 2]);
+    }
+    return min;
+  }
+
+  @Override
+  public int getMax() {
+    int max = Integer.MIN_VALUE;
+    for (int range = 0; range < weights.length; range++) {
+      max = Math.max(max, ranges[range * 2 + 1]);
+    }
+    return max;
+  }
+}
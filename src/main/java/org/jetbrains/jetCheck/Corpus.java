@@ -0,0 +1,245 @@
+package org.jetbrains.jetCheck;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A persistent collection of serialized generator data (e.g. counterexamples found earlier), to be
+ * {@link PropertyChecker.Parameters#withCorpus replayed} as the first iterations of a check.
+ * The entries are stored in the compact binary form (see {@link PropertyFailure.CounterExample#writeSerializedData}),
+ * so a corpus can hold a very large number of them, keeping only a 64-bit fingerprint of each on the heap.<p></p>
+ *
+ * A corpus occupies a directory with two memory-mapped files: {@code data.bin} with the entries one after another,
+ * and {@code index.bin} with the entry count followed by the end offset of each entry. The count is updated after the entry is written,
+ * so an interrupted append leaves the corpus consistent. The files grow as needed, but the data is limited by 2 GB.<p></p>
+ *
+ * The methods are thread-safe. Don't forget to {@link #close()} the corpus to make sure the data is written to the disk.
+ */
+public final class Corpus implements Closeable {
+  private static final int MAGIC = 0x4A43_4B43;
+  private static final int FORMAT_VERSION = 1;
+  private static final int INDEX_HEADER_SIZE = 12;
+  private static final int COUNT_OFFSET = 8;
+  private final FileChannel dataChannel;
+  private final FileChannel indexChannel;
+  private MappedByteBuffer data;
+  private MappedByteBuffer index;
+  private int size;
+  /** The index of the first entry having each {@link #fingerprint}, to find duplicates without comparing an entry to all others */
+  private final Map<Long, Integer> entriesByFingerprint = new HashMap<>();
+
+  private Corpus(FileChannel dataChannel, FileChannel indexChannel) throws IOException {
+    this.dataChannel = dataChannel;
+    this.indexChannel = indexChannel;
+    boolean created = indexChannel.size() == 0;
+    index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(indexChannel.size(), 4096));
+    data = dataChannel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(dataChannel.size(), 64 * 1024));
+    if (created) {
+      index.putInt(0, MAGIC).putInt(4, FORMAT_VERSION).putInt(COUNT_OFFSET, 0);
+    }
+    else if (index.getInt(0) != MAGIC || index.getInt(4) != FORMAT_VERSION) {
+      throw new IOException("Not a jetCheck corpus of a supported version");
+    }
+    size = index.getInt(COUNT_OFFSET);
+    for (int i = 0; i < size; i++) {
+      entriesByFingerprint.putIfAbsent(fingerprint(getEntry(i)), i);
+    }
+  }
+
+  /** Opens the corpus stored in the given directory, creating an empty one if it doesn't exist */
+  @NotNull
+  public static Corpus open(@NotNull Path directory) throws IOException {
+    Files.createDirectories(directory);
+    FileChannel dataChannel = openChannel(directory.resolve("data.bin"));
+    FileChannel indexChannel = null;
+    try {
+      indexChannel = openChannel(directory.resolve("index.bin"));
+      return new Corpus(dataChannel, indexChannel);
+    }
+    catch (IOException | RuntimeException e) {
+      dataChannel.close();
+      if (indexChannel != null) {
+        indexChannel.close();
+      }
+      throw e;
+    }
+  }
+
+  private static FileChannel openChannel(Path file) throws IOException {
+    return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+  }
+
+  /** @return the number of entries in this corpus */
+  public synchronized int size() {
+    return size;
+  }
+
+  /** Appends the data of the given counterexample, unless the corpus already contains the same data */
+  public void add(@NotNull PropertyFailure.CounterExample<?> example) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try {
+      example.writeSerializedData(bytes);
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    ByteBuffer entry = ByteBuffer.wrap(bytes.toByteArray());
+    synchronized (this) {
+      if (!contains(entry)) {
+        add(entry);
+      }
+    }
+  }
+
+  private boolean contains(ByteBuffer entry) {
+    Integer candidate = entriesByFingerprint.get(fingerprint(entry));
+    if (candidate == null) return false;
+    if (getEntry(candidate).equals(entry)) return true;
+
+    // a fingerprint collision, which is very unlikely, but then only comparing with all entries gives the right answer
+    for (int i = candidate + 1; i < size; i++) {
+      if (getEntry(i).equals(entry)) return true;
+    }
+    return false;
+  }
+
+  /** @return the 64-bit FNV-1a hash of the remaining bytes of the given buffer */
+  private static long fingerprint(ByteBuffer entry) {
+    long hash = 0xcbf29ce484222325L;
+    for (int i = entry.position(); i < entry.limit(); i++) {
+      hash = (hash ^ (entry.get(i) & 0xFF)) * 0x100000001b3L;
+    }
+    return hash;
+  }
+
+  /** Appends the remaining bytes of the given buffer as a new entry, and returns its index */
+  synchronized int add(@NotNull ByteBuffer entry) {
+    int start = endOffset(size - 1);
+    long end = (long)start + entry.remaining();
+    if (end > Integer.MAX_VALUE) throw new IllegalStateException("Corpus data exceeds 2 GB");
+    data = ensureCapacity(dataChannel, data, end);
+    index = ensureCapacity(indexChannel, index, INDEX_HEADER_SIZE + (size + 1) * 4L);
+
+    ByteBuffer target = data.duplicate();
+    target.position(start);
+    target.put(entry.duplicate());
+    index.putInt(INDEX_HEADER_SIZE + size * 4, (int)end);
+    index.putInt(COUNT_OFFSET, size + 1);
+    entriesByFingerprint.putIfAbsent(fingerprint(entry), size);
+    return size++;
+  }
+
+  private static MappedByteBuffer ensureCapacity(FileChannel channel, MappedByteBuffer buffer, long required) {
+    if (required <= buffer.capacity()) return buffer;
+    long newCapacity = Math.min(Integer.MAX_VALUE, Math.max(required, buffer.capacity() * 2L));
+    try {
+      return channel.map(FileChannel.MapMode.READ_WRITE, 0, newCapacity);
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private int endOffset(int entryIndex) {
+    return entryIndex < 0 ? 0 : index.getInt(INDEX_HEADER_SIZE + entryIndex * 4);
+  }
+
+  /** @return a read-only view of the given entry's bytes in the mapped file, without copying them */
+  @NotNull
+  public synchronized ByteBuffer getEntry(int entryIndex) {
+    if (entryIndex < 0 || entryIndex >= size) throw new IndexOutOfBoundsException(entryIndex + " not in [0, " + size + ")");
+    ByteBuffer view = data.asReadOnlyBuffer();
+    view.limit(endOffset(entryIndex));
+    view.position(endOffset(entryIndex - 1));
+    return view.slice();
+  }
+
+  /** @return the data of the given entry, with the seed and size hint read from the header, and the ints not read yet */
+  DataSerializer.SerializedIntSource readHeader(int entryIndex) {
+    return DataSerializer.readBinary(asStream(getEntry(entryIndex)));
+  }
+
+  /**
+   * @return a source of ints taken from the given entry data (see {@link #readHeader}), which switches to the fallback source
+   * when the entry's data ends or doesn't fit the requested distribution
+   */
+  static IntSource createSource(DataSerializer.SerializedIntSource serialized, IntSource fallback) {
+    return new IntSource() {
+      boolean exhausted;
+
+      @Override
+      public int drawInt(IntDistribution distribution) {
+        if (!exhausted) {
+          try {
+            return serialized.drawInt(distribution);
+          }
+          catch (DataSerializer.EOFException | CannotRestoreValue e) {
+            exhausted = true;
+          }
+        }
+        return fallback.drawInt(distribution);
+      }
+
+      @Override
+      public long drawLong(LongDistribution distribution) {
+        if (!exhausted) {
+          try {
+            return serialized.drawLong(distribution);
+          }
+          catch (DataSerializer.EOFException | CannotRestoreValue e) {
+            exhausted = true;
+          }
+        }
+        return fallback.drawLong(distribution);
+      }
+    };
+  }
+
+  static InputStream asStream(ByteBuffer buffer) {
+    return new InputStream() {
+      @Override
+      public int read() {
+        return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+      }
+
+      @Override
+      public int read(@NotNull byte[] b, int off, int len) {
+        if (!buffer.hasRemaining()) return -1;
+        int count = Math.min(len, buffer.remaining());
+        buffer.get(b, off, count);
+        return count;
+      }
+
+      @Override
+      public int available() {
+        return buffer.remaining();
+      }
+    };
+  }
+
+  /** Makes sure the appended entries are written to the disk */
+  public synchronized void flush() {
+    data.force();
+    index.force();
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    flush();
+    try {
+      dataChannel.close();
+    }
+    finally {
+      indexChannel.close();
+    }
+  }
+}
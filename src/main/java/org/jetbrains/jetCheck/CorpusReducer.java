@@ -0,0 +1,134 @@
+package org.jetbrains.jetCheck;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Removes redundant entries from a {@link Corpus}, so that replaying it stays fast. Each entry is replayed by the given generator
+ * and checked against the property, and the entries are grouped by a signature of the observed behavior:
+ * the outcome of the property check (success, {@code false} result, or the type and location of the thrown exception),
+ * the labels given via {@link GenerationEnvironment#classify}, and optionally a {@link #withSignature user-provided} one.
+ * Only the smallest entry (by the number of generated ints) of each group is kept.<p></p>
+ *
+ * Each entry's data is first read into a structure by the generator, and the checked value is then replayed from that structure
+ * the same way as counterexamples are replayed during shrinking. The entries are replayed in parallel, so the generator and the property
+ * should be thread-safe. Entries that the generator can't replay anymore (e.g. because it has been changed, or it throws) are dropped.
+ */
+public final class CorpusReducer<T> {
+  private final Generator<T> generator;
+  private final Predicate<T> property;
+  @Nullable private final Function<? super T, ?> signature;
+
+  private CorpusReducer(Generator<T> generator, Predicate<T> property, @Nullable Function<? super T, ?> signature) {
+    this.generator = generator;
+    this.property = property;
+    this.signature = signature;
+  }
+
+  /** @return a reducer that checks the values replayed from the corpus entries with the given property */
+  @NotNull
+  public static <T> CorpusReducer<T> forProperty(@NotNull Generator<T> generator, @NotNull Predicate<T> property) {
+    return new CorpusReducer<>(generator, property, null);
+  }
+
+  /**
+   * @param signature a function computing an additional distinguishing feature of a value, e.g. a coverage bitmap
+   *                  of the code under test. The results are compared using {@link Object#equals}.
+   * @return a modified copy of this reducer
+   */
+  @NotNull
+  public CorpusReducer<T> withSignature(@NotNull Function<? super T, ?> signature) {
+    return new CorpusReducer<>(generator, property, signature);
+  }
+
+  /**
+   * Appends the representative entries of {@code source} to {@code target}, in their original order.
+   * @return the number of entries added
+   */
+  public int reduce(@NotNull Corpus source, @NotNull Corpus target) {
+    if (source == target) throw new IllegalArgumentException("The reduced entries should be written into another corpus");
+
+    Map<Object, Candidate> representatives = IntStream.range(0, source.size())
+      .parallel()
+      .mapToObj(i -> replay(source, i))
+      .filter(Objects::nonNull)
+      .collect(Collectors.toMap(c -> c.signature, c -> c, (c1, c2) -> c1.compareTo(c2) <= 0 ? c1 : c2));
+
+    int[] kept = representatives.values().stream().mapToInt(c -> c.entryIndex).sorted().toArray();
+    for (int index : kept) {
+      target.add(source.getEntry(index));
+    }
+    return kept.length;
+  }
+
+  @Nullable
+  private Candidate replay(Corpus corpus, int entryIndex) {
+    StructureNode node = new StructureNode(new NodeId(generator));
+    GenerativeDataStructure data;
+    T value;
+    try (DataSerializer.SerializedIntSource source = corpus.readHeader(entryIndex)) {
+      data = new GenerativeDataStructure(source, node, source.sizeHint, PropertyChecker.DEFAULT_MAX_GENERATION_DEPTH, null, null);
+      generateValue(data);
+      source.checkShape(node);
+      value = generateValue(new ReplayDataStructure(node, source.sizeHint, IntCustomizer::checkValidInt, new HashSet<>()));
+    }
+    catch (Throwable e) {
+      return null;
+    }
+
+    List<Object> signature = new ArrayList<>(3);
+    signature.add(checkProperty(value));
+    signature.add(new TreeSet<>(data.getLabels()));
+    if (this.signature != null) {
+      signature.add(this.signature.apply(value));
+    }
+
+    int[] intCount = {0};
+    node.serialize(__ -> intCount[0]++);
+    return new Candidate(entryIndex, signature, intCount[0], corpus.getEntry(entryIndex).remaining());
+  }
+
+  private T generateValue(AbstractDataStructure data) {
+    T value = generator.getGeneratorFunction().apply(data);
+    data.finishGeneration();
+    return value;
+  }
+
+  /** @return a description of the check outcome, which is the same for exceptions of the same type thrown from the same place */
+  private Object checkProperty(T value) {
+    try {
+      return property.test(value) ? "success" : "false";
+    }
+    catch (Throwable e) {
+      StackTraceElement[] trace = e.getStackTrace();
+      return trace.length == 0 ? e.getClass().getName() : e.getClass().getName() + " at " + trace[0];
+    }
+  }
+
+  private static class Candidate implements Comparable<Candidate> {
+    final int entryIndex;
+    final Object signature;
+    final int intCount;
+    final int byteCount;
+
+    Candidate(int entryIndex, Object signature, int intCount, int byteCount) {
+      this.entryIndex = entryIndex;
+      this.signature = signature;
+      this.intCount = intCount;
+      this.byteCount = byteCount;
+    }
+
+    @Override
+    public int compareTo(@NotNull Candidate o) {
+      if (intCount != o.intCount) return Integer.compare(intCount, o.intCount);
+      if (byteCount != o.byteCount) return Integer.compare(byteCount, o.byteCount);
+      return Integer.compare(entryIndex, o.entryIndex);
+    }
+  }
+}
@@ -3,6 +3,8 @@ package org.jetbrains.jetCheck;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.HashSet;
 
 class CounterExampleImpl<T> implements PropertyFailure.CounterExample<T> {
@@ -12,6 +14,8 @@ class CounterExampleImpl<T> implements PropertyFailure.CounterExample<T> {
   private final Iteration<T> iteration;
 
   private CounterExampleImpl(StructureNode data, T value, @Nullable Throwable exception, Iteration<T> iteration) {
+    // the root and the lazy collection items of a generated structure are complete only after the property check
+    data.freeze();
     this.data = data;
     this.value = value;
     this.exception = exception;
@@ -54,20 +58,41 @@ class CounterExampleImpl<T> implements PropertyFailure.CounterExample<T> {
     return DataSerializer.serialize(iteration, data);
   }
 
+  @Override
+  public void writeSerializedData(@NotNull OutputStream stream) throws IOException {
+    stream.write(DataSerializer.serializeBinary(iteration, data));
+  }
+
   ReplayDataStructure createReplayData() {
     return new ReplayDataStructure(data, iteration.sizeHint, IntCustomizer::checkValidInt, new HashSet<>());
   }
 
   static <T> CounterExampleImpl<T> checkProperty(Iteration<T> iteration, T value, StructureNode node) {
+    return checkProperty(iteration, value, node, iteration.session.notifier);
+  }
+
+  /** @param notifier the notifier to report the check to, or null for checks made on a background thread, which are reported later */
+  static <T> CounterExampleImpl<T> checkProperty(Iteration<T> iteration, T value, StructureNode node, @Nullable StatusNotifier notifier) {
+    Object event = FlightRecorderEvents.beginPropertyCheck();
+    CounterExampleImpl<T> example = doCheckProperty(iteration, value, node, notifier);
+    FlightRecorderEvents.commitPropertyCheck(event, iteration, node, example != null);
+    return example;
+  }
+
+  private static <T> CounterExampleImpl<T> doCheckProperty(Iteration<T> iteration, T value, StructureNode node, @Nullable StatusNotifier notifier) {
     try {
-      iteration.session.notifier.beforePropertyCheck(value);
+      if (notifier != null) notifier.beforePropertyCheck(value);
       if (!iteration.session.property.test(value)) {
-        iteration.session.notifier.propertyCheckFailed(null);
+        if (notifier != null) notifier.propertyCheckFailed(null);
         return new CounterExampleImpl<>(node, value, null, iteration);
       }
     }
+    catch (CannotRestoreValue e) {
+      // a lazy collection consumed by the property couldn't be replayed, which isn't a failure of the property
+      throw e;
+    }
     catch (Throwable e) {
-      iteration.session.notifier.propertyCheckFailed(e);
+      if (notifier != null) notifier.propertyCheckFailed(e);
       return new CounterExampleImpl<>(node, value, e, iteration);
     }
     return null;
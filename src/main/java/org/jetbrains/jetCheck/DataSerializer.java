@@ -2,16 +2,39 @@
 package org.jetbrains.jetCheck;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Base64;
+import java.util.List;
+import java.util.function.LongConsumer;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
 
 /**
+ * Serializes the data used for generating a counterexample, so that it can be {@link PropertyChecker.Parameters#rechecking rechecked}.<p></p>
+ *
+ * The current (second) format is binary, and its text form is {@code "v2:"} followed by the Base64-encoded bytes.
+ * It starts with a header: the format version byte, the flags byte and the checksum of the generated structure shape,
+ * which allows to detect that the generators have changed since the serialization. The rest holds the seed, the size hint
+ * and the generated numbers (ints and {@link Generator#longs longs}), as unsigned LEB128 varints of zig-zag-encoded numbers,
+ * so that small negative numbers are short too. If it makes the data shorter, the numbers are encoded as differences from the previous ones ({@link #FLAG_DELTA}),
+ * and everything after the header is DEFLATE-compressed ({@link #FLAG_DEFLATE}). The data is decoded lazily, as generators request it.<p></p>
+ *
+ * The first format is Base64 without any prefix (':' never occurs in Base64), holding the seed, the size hint and the ints
+ * in a custom varint encoding, with longs and doubles recorded as two ints, the high half first. It's still readable, but not written anymore.
+ *
  * @author peter
  */
 class DataSerializer {
+  static final String V2_PREFIX = "v2:";
+  private static final int VERSION = 2;
+  private static final int FLAG_DEFLATE = 1;
+  private static final int FLAG_DELTA = 2;
 
-  private static int readINT(ByteArrayInputStream record) {
+  private static int readINT(InputStream record) {
     int val = readWithEof(record);
     if (val < 192) {
       return val;
@@ -27,35 +50,139 @@ class DataSerializer {
     }
   }
 
-  private static int readWithEof(ByteArrayInputStream record) {
-    if (record.available() <= 0) {
+  private static int readWithEof(InputStream record) {
+    int result;
+    try {
+      result = record.read();
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    if (result < 0) {
       throw new EOFException();
     }
-    return record.read();
+    return result;
   }
 
-  static void writeINT(ByteArrayOutputStream record, int val) {
-    if (0 > val || val >= 192) {
-      record.write(192 + (val & 0x3F));
-      val >>>= 6;
-      while (val >= 128) {
-        record.write((val & 0x7F) | 0x80);
-        val >>>= 7;
+  private static long readVarLong(InputStream record) {
+    long result = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      int next = readWithEof(record);
+      result |= (long)(next & 0x7F) << shift;
+      if ((next & 0x80) == 0) {
+        return result;
       }
     }
-    record.write(val);
+    throw errorRestoringSerialized();
+  }
+
+  private static void writeVarLong(ByteArrayOutputStream record, long val) {
+    while ((val & ~0x7FL) != 0) {
+      record.write((int)(val & 0x7F) | 0x80);
+      val >>>= 7;
+    }
+    record.write((int)val);
+  }
+
+  private static long zigZag(long val) {
+    return (val << 1) ^ (val >> 63);
   }
-  
-  static String serialize(Iteration iteration, StructureElement node) {
-    ByteArrayOutputStream data = new ByteArrayOutputStream();
-    writeINT(data, (int)(iteration.iterationSeed >> 32));
-    writeINT(data, (int)iteration.iterationSeed);
-    writeINT(data, iteration.sizeHint);
-    node.serialize(data);
-    return Base64.getEncoder().encodeToString(data.toByteArray());
+
+  private static long unZigZag(long val) {
+    return (val >>> 1) ^ -(val & 1);
+  }
+
+  static String serialize(Iteration<?> iteration, StructureNode node) {
+    return V2_PREFIX + Base64.getEncoder().encodeToString(serializeBinary(iteration, node));
+  }
+
+  static byte[] serializeBinary(Iteration<?> iteration, StructureNode node) {
+    LongList numbers = new LongList();
+    node.serialize(numbers);
+
+    int flags = 0;
+    byte[] body = encodeBody(iteration, numbers, false);
+    byte[] deltaBody = encodeBody(iteration, numbers, true);
+    if (deltaBody.length < body.length) {
+      body = deltaBody;
+      flags |= FLAG_DELTA;
+    }
+    byte[] deflated = deflate(body);
+    if (deflated.length < body.length) {
+      body = deflated;
+      flags |= FLAG_DEFLATE;
+    }
+
+    ByteArrayOutputStream result = new ByteArrayOutputStream(body.length + 6);
+    result.write(VERSION);
+    result.write(flags);
+    int checksum = shapeChecksum(node);
+    for (int shift = 24; shift >= 0; shift -= 8) {
+      result.write(checksum >>> shift);
+    }
+    result.write(body, 0, body.length);
+    return result.toByteArray();
+  }
+
+  private static byte[] encodeBody(Iteration<?> iteration, LongList numbers, boolean delta) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(numbers.size + 10);
+    writeVarLong(out, zigZag(iteration.iterationSeed));
+    writeVarLong(out, iteration.sizeHint);
+    long previous = 0;
+    for (int i = 0; i < numbers.size; i++) {
+      long value = numbers.data[i];
+      writeVarLong(out, zigZag(delta ? value - previous : value));
+      previous = value;
+    }
+    return out.toByteArray();
+  }
+
+  private static byte[] deflate(byte[] bytes) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length);
+    try (DeflaterOutputStream deflater = new DeflaterOutputStream(out)) {
+      deflater.write(bytes);
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return out.toByteArray();
+  }
+
+  /**
+   * @return a hash of the shape of the given structure, which doesn't depend on the generated int values.
+   * Nodes having a single node child are skipped, because {@link Generator#noShrink} wrapping added during rechecking produces them.
+   * {@link StructureKind#STREAM} nodes are ignored, because the shape is checked before the property consumes lazy collections.
+   */
+  static int shapeChecksum(StructureElement element) {
+    if (element instanceof LongData) return 2;
+    if (element instanceof ArrayData) return 3;
+    if (!(element instanceof StructureNode)) return 1;
+
+    StructureNode node = (StructureNode)element;
+    List<StructureElement> children = node.children;
+    if (!children.isEmpty() && isStream(children.get(children.size() - 1))) {
+      children = children.subList(0, children.size() - 1);
+    }
+    if (children.size() == 1 && children.get(0) instanceof StructureNode) {
+      return shapeChecksum(children.get(0));
+    }
+    int hash = node.kind.ordinal() + 2;
+    for (StructureElement child : children) {
+      hash = hash * 31 + shapeChecksum(child);
+    }
+    return hash * 31 + children.size();
+  }
+
+  private static boolean isStream(StructureElement element) {
+    return element instanceof StructureNode && ((StructureNode)element).kind == StructureKind.STREAM;
   }
 
   static PropertyChecker.Parameters deserializeInto(String data, PropertyChecker.Parameters parameters) {
+    if (data.startsWith(V2_PREFIX)) {
+      byte[] base64 = data.substring(V2_PREFIX.length()).getBytes(StandardCharsets.ISO_8859_1);
+      return deserializeInto(Base64.getDecoder().wrap(new ByteArrayInputStream(base64)), parameters);
+    }
+
     ByteArrayInputStream stream = new ByteArrayInputStream(Base64.getDecoder().decode(data));
 
     int seedHigh = readINT(stream);
@@ -63,9 +190,35 @@ class DataSerializer {
     long globalSeed = (long)seedHigh << 32 | seedLow & 0xFFFFFFFFL;
 
     int hint = readINT(stream);
-    SerializedIntSource serializedData = new SerializedIntSource(stream);
-    return new PropertyChecker.Parameters(globalSeed, serializedData, __ -> hint, 1,
-            parameters.silent, parameters.printValues, parameters.printData, parameters.maxGenerationDepth);
+    SerializedIntSource serializedData = new SerializedIntSource(stream, 1, false, null, globalSeed, hint);
+    return parameters.withSerializedData(globalSeed, serializedData, hint);
+  }
+
+  /** Reads the binary form of the current format, consuming the stream only as much as the generators need */
+  static PropertyChecker.Parameters deserializeInto(InputStream stream, PropertyChecker.Parameters parameters) {
+    SerializedIntSource serializedData = readBinary(stream);
+    return parameters.withSerializedData(serializedData.seed, serializedData, serializedData.sizeHint);
+  }
+
+  /** Reads the header of the binary form of the current format, leaving the generated ints in the stream to be read on demand */
+  static SerializedIntSource readBinary(InputStream stream) {
+    int version = readWithEof(stream);
+    if (version != VERSION) {
+      throw new IllegalArgumentException("Unsupported serialized data version " + version + ", only " + VERSION + " is supported");
+    }
+    int flags = readWithEof(stream);
+    if ((flags & ~(FLAG_DEFLATE | FLAG_DELTA)) != 0) {
+      throw new IllegalArgumentException("Unsupported serialized data flags: " + flags);
+    }
+    int checksum = 0;
+    for (int i = 0; i < 4; i++) {
+      checksum = checksum << 8 | readWithEof(stream);
+    }
+
+    InputStream body = (flags & FLAG_DEFLATE) != 0 ? new InflaterInputStream(stream) : stream;
+    long globalSeed = unZigZag(readVarLong(body));
+    int hint = (int)readVarLong(body);
+    return new SerializedIntSource(body, version, (flags & FLAG_DELTA) != 0, checksum, globalSeed, hint);
   }
 
   @NotNull
@@ -75,21 +228,92 @@ class DataSerializer {
 
   static class EOFException extends RuntimeException {}
 
-  static class SerializedIntSource implements IntSource {
-    private final ByteArrayInputStream stream;
+  static class SerializedIntSource implements IntSource, Closeable {
+    private final InputStream stream;
+    private final int version;
+    private final boolean delta;
+    @Nullable private final Integer shapeChecksum;
+    final long seed;
+    final int sizeHint;
+    private long previous;
 
-    SerializedIntSource(ByteArrayInputStream stream) {
+    SerializedIntSource(InputStream stream, int version, boolean delta, @Nullable Integer shapeChecksum, long seed, int sizeHint) {
       this.stream = stream;
+      this.version = version;
+      this.delta = delta;
+      this.shapeChecksum = shapeChecksum;
+      this.seed = seed;
+      this.sizeHint = sizeHint;
     }
 
     @Override
     public int drawInt(IntDistribution dist) {
-      int i = readINT(stream);
+      int i = readNext();
       if (!dist.isValidValue(i)) {
         throw errorRestoringSerialized();
       }
       return i;
     }
 
+    @Override
+    public long drawLong(LongDistribution dist) {
+      // the first format recorded longs as two ints
+      if (version == 1) return IntSource.super.drawLong(dist);
+
+      long l = readNextLong();
+      if (!dist.isValidValue(l)) {
+        throw errorRestoringSerialized();
+      }
+      return l;
+    }
+
+    private int readNext() {
+      if (version == 1) return readINT(stream);
+
+      // ints are truncated after adding the delta, which keeps the data written with 32-bit deltas readable
+      int value = (int)(delta ? previous + unZigZag(readVarLong(stream)) : unZigZag(readVarLong(stream)));
+      previous = value;
+      return value;
+    }
+
+    private long readNextLong() {
+      long value = unZigZag(readVarLong(stream));
+      if (delta) {
+        value += previous;
+      }
+      previous = value;
+      return value;
+    }
+
+    /** Fails if the structure generated from this data has a different shape than the serialized one */
+    void checkShape(StructureNode generated) {
+      if (shapeChecksum != null && shapeChecksum != shapeChecksum(generated)) {
+        throw errorRestoringSerialized();
+      }
+    }
+
+    /** Closes the stream, which releases the native memory of its decompressor if the data is {@link #FLAG_DEFLATE compressed} */
+    @Override
+    public void close() {
+      try {
+        stream.close();
+      }
+      catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+  }
+
+  private static class LongList implements LongConsumer {
+    long[] data = new long[16];
+    int size;
+
+    @Override
+    public void accept(long value) {
+      if (size == data.length) {
+        data = Arrays.copyOf(data, size * 2);
+      }
+      data[size++] = value;
+    }
   }
 }
@@ -0,0 +1,34 @@
+package org.jetbrains.jetCheck;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.function.DoubleFunction;
+import java.util.function.DoubleUnaryOperator;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * A generator of doubles (e.g. {@link Generator#doubleValues}), which can be run via {@link GenerationEnvironment#generateDouble}
+ * without boxing the results. It records the same data as when run via {@link GenerationEnvironment#generate}.
+ */
+public final class DoubleGenerator extends Generator<Double> {
+  private final ToDoubleFunction<GenerationEnvironment> myDoubleFunction;
+
+  DoubleGenerator(@NotNull ToDoubleFunction<GenerationEnvironment> function) {
+    super(function::applyAsDouble);
+    myDoubleFunction = function;
+  }
+
+  double generateDouble(@NotNull GenerationEnvironment data) {
+    return myDoubleFunction.applyAsDouble(data);
+  }
+
+  /** Like {@link #map}, but without boxing */
+  public DoubleGenerator mapToDouble(@NotNull DoubleUnaryOperator fun) {
+    return new DoubleGenerator(data -> fun.applyAsDouble(myDoubleFunction.applyAsDouble(data)));
+  }
+
+  /** Like {@link #map}, but without boxing the generated doubles */
+  public <V> Generator<V> mapToObj(@NotNull DoubleFunction<? extends V> fun) {
+    return from(data -> fun.apply(myDoubleFunction.applyAsDouble(data)));
+  }
+}
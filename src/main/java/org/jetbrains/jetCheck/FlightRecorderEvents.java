@@ -0,0 +1,51 @@
+package org.jetbrains.jetCheck;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Hooks for emitting Java Flight Recorder events about iterations, value generation, property checks and shrinking.
+ * This is the Java 8 version where the hooks do nothing. On Java 11+, the multi-release jar replaces this class
+ * with the one from {@code src/main/java11} which emits real events when the recording has them enabled.<p></p>
+ *
+ * Each {@code begin*} method returns an event token to be passed to the corresponding {@code commit*} method,
+ * or {@code null} if the event isn't recorded, in which case committing does nothing.
+ * This keeps the cost negligible when JFR isn't recording.
+ */
+final class FlightRecorderEvents {
+  private FlightRecorderEvents() {}
+
+  @Nullable
+  static Object beginIteration() {
+    return null;
+  }
+
+  static void commitIteration(@Nullable Object event, Iteration<?> iteration, @Nullable StructureNode data, boolean failed) {
+  }
+
+  /**
+   * @param depth the nesting level of the generator call, 1 for the generators invoked directly by the top-level one
+   */
+  @Nullable
+  static Object beginGeneration(int depth) {
+    return null;
+  }
+
+  static void commitGeneration(@Nullable Object event, Generator<?> generator, int depth, StructureNode data) {
+  }
+
+  @Nullable
+  static Object beginPropertyCheck() {
+    return null;
+  }
+
+  static void commitPropertyCheck(@Nullable Object event, Iteration<?> iteration, StructureNode data, boolean failed) {
+  }
+
+  @Nullable
+  static Object beginShrinkStep() {
+    return null;
+  }
+
+  static void commitShrinkStep(@Nullable Object event, Iteration<?> iteration, StructureNode data, int attempt, boolean accepted) {
+  }
+}
@@ -21,6 +21,40 @@ public interface GenerationEnvironment {
   /** Runs the given generator on a data sub-structure of this structure and returns the result */
   <T> T generate(@NotNull Generator<T> generator);
 
+  /** Like {@link #generate}, but without boxing the result */
+  default int generateInt(@NotNull IntGenerator generator) {
+    return generate(generator);
+  }
+
+  /** Like {@link #generate}, but without boxing the result */
+  default long generateLong(@NotNull LongGenerator generator) {
+    return generate(generator);
+  }
+
+  /** Like {@link #generate}, but without boxing the result */
+  default double generateDouble(@NotNull DoubleGenerator generator) {
+    return generate(generator);
+  }
+
+  /**
+   * Marks the value being generated with the given label, e.g. {@code "empty"}. After the check, the checker prints which
+   * percentage of the checked values had each label, to show whether the generators cover the interesting cases well enough.
+   * Each label is counted once per value. The labels of values not checked (e.g. rejected by {@link Generator#suchThat})
+   * aren't counted, neither are the labels given while shrinking.
+   * @see PropertyChecker.Parameters#withCoverage
+   */
+  default void classify(@NotNull String label) {
+  }
+
+  /**
+   * Classifies the value being generated by a number, e.g. a collection size. The numbers are grouped into buckets,
+   * and the value is {@link #classify classified} as {@code "name: bucket"}, where the buckets are
+   * {@code 0}, {@code 1}, {@code 2..3}, {@code 4..7}, {@code 8..15} and so on (and similarly for negative numbers).
+   */
+  default void collect(@NotNull String name, int value) {
+    classify(ValueClassification.bucketLabel(name, value));
+  }
+
   /**
    * Creates a fresh environment that draws every int from the given source, for producing a value outside
    * {@link PropertyChecker}. Pass the result to {@link #generate(Generator)} to obtain one value:
@@ -49,7 +83,7 @@ public interface GenerationEnvironment {
     Objects.requireNonNull(source, "source");
     if (sizeHint < 0) throw new IllegalArgumentException("sizeHint must be non-negative: " + sizeHint);
     GenerativeDataStructure root =
-      new GenerativeDataStructure(source, new StructureNode(new NodeId()), sizeHint, PropertyChecker.DEFAULT_MAX_GENERATION_DEPTH);
+      new GenerativeDataStructure(source, new StructureNode(new NodeId()), sizeHint, PropertyChecker.DEFAULT_MAX_GENERATION_DEPTH, null, null);
     return new GenerationEnvironment() {
       @Override
       public int getSizeHint() {
@@ -61,7 +95,9 @@ public interface GenerationEnvironment {
         // Run the generator on the root structure, the way a PropertyChecker iteration does, so the top-level
         // generator sees the full size hint. Calling root.generate(generator) instead would descend into a
         // sub-structure and hand the generator a hint reduced by one.
-        return generator.getGeneratorFunction().apply(root);
+        T value = generator.getGeneratorFunction().apply(root);
+        root.finishGeneration();
+        return value;
       }
     };
   }
@@ -0,0 +1,174 @@
+package org.jetbrains.jetCheck;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Counts how often {@link Generator#suchThat} conditions reject the generated values, and how often whole values are discarded
+ * because their conditions couldn't be satisfied or because they duplicate previously generated ones. Such retries make generation
+ * proportionally slower, which otherwise goes unnoticed.
+ * See {@link PropertyChecker.Parameters#printGenerationStatistics()} and {@link PropertyChecker.Parameters#withMaxRejectionRate}.
+ */
+@SuppressWarnings("UseOfSystemOutOrSystemErr")
+class GenerationStatistics {
+  /** Rejection rates computed from fewer attempts are too noisy to fail the check */
+  static final int MIN_ATTEMPTS_TO_CHECK_RATE = 20;
+  private final Map<Predicate<?>, ConditionStats> conditions = new IdentityHashMap<>();
+  /** The number of distinct conditions having each description, to number the next ones with the same description */
+  private final Map<String, Integer> descriptionCounts = new HashMap<>();
+  private final List<ConditionStats> restoredConditions = new ArrayList<>();
+  private int generatedValues;
+  private int unsatisfiedValues;
+  private int duplicateValues;
+
+  void conditionChecked(@NotNull Generator<?> generator, @NotNull Predicate<?> condition, boolean accepted) {
+    ConditionStats stats = conditions.computeIfAbsent(condition, __ -> new ConditionStats(describeNew(generator, condition)));
+    stats.attempts++;
+    if (accepted) stats.accepted++;
+  }
+
+  /**
+   * @return a description of a condition which is the same in different JVMs, so that the statistics restored from a checkpoint are merged
+   * with the live ones by it. Lambdas are described by their enclosing classes, and conditions getting the same description are numbered
+   * in the order they're first checked.
+   */
+  private String describeNew(Generator<?> generator, Predicate<?> condition) {
+    String owner = generator.getDescription();
+    String description = "suchThat(" + describeClass(condition) + ") on " +
+                         (owner != null ? owner : describeClass(generator.getGeneratorFunction()));
+    int count = descriptionCounts.merge(description, 1, Integer::sum);
+    return count == 1 ? description : description + " #" + count;
+  }
+
+  /** @return the class name of the given object, with lambda classes replaced by their enclosing classes, since their names differ between JVMs */
+  private static String describeClass(Object o) {
+    String name = o.getClass().getName();
+    int lambda = name.indexOf("$$Lambda");
+    return lambda < 0 ? name : "lambda in " + name.substring(0, lambda);
+  }
+
+  void valueGenerated() {
+    generatedValues++;
+  }
+
+  void conditionNotSatisfied() {
+    unsatisfiedValues++;
+  }
+
+  void duplicateGenerated() {
+    duplicateValues++;
+  }
+
+  /** @return the attempt statistics of all {@code suchThat} conditions, grouped by their descriptions, most rejecting first */
+  List<ConditionStats> getConditionStats() {
+    Map<String, ConditionStats> byName = new LinkedHashMap<>();
+    List<ConditionStats> all = new ArrayList<>(restoredConditions);
+    all.addAll(conditions.values());
+    for (ConditionStats each : all) {
+      byName.computeIfAbsent(each.name, ConditionStats::new).add(each);
+    }
+    List<ConditionStats> result = new ArrayList<>(byName.values());
+    result.sort(Comparator.comparingLong(ConditionStats::getRejected).reversed());
+    return result;
+  }
+
+  /** @return the proportion of top-level values discarded due to unsatisfiable conditions or duplication */
+  double getDiscardRate() {
+    int attempts = generatedValues + unsatisfiedValues;
+    return attempts == 0 ? 0 : (double)(unsatisfiedValues + duplicateValues) / attempts;
+  }
+
+  /**
+   * @return a description of the first kind of retries whose rate exceeds the given one,
+   * or null if there are none (or they're too infrequent to judge)
+   */
+  @Nullable
+  String findExcessiveRejection(double maxRate) {
+    if (generatedValues + unsatisfiedValues >= MIN_ATTEMPTS_TO_CHECK_RATE && getDiscardRate() > maxRate) {
+      return formatPercent(getDiscardRate()) + " of generated values were discarded";
+    }
+    for (ConditionStats stats : getConditionStats()) {
+      if (stats.attempts >= MIN_ATTEMPTS_TO_CHECK_RATE && stats.getRejectionRate() > maxRate) {
+        return formatPercent(stats.getRejectionRate()) + " of values were rejected by " + stats.name;
+      }
+    }
+    return null;
+  }
+
+  String getReport() {
+    StringBuilder sb = new StringBuilder("Generation statistics:\n");
+    sb.append(String.format(Locale.ROOT, "  %d values generated, %d discarded as duplicates, %d discarded as conditions couldn't be satisfied%n",
+                            generatedValues, duplicateValues, unsatisfiedValues));
+    List<ConditionStats> conditionStats = getConditionStats();
+    if (!conditionStats.isEmpty()) {
+      sb.append(String.format(Locale.ROOT, "%10s %10s %10s  %s%n", "attempts", "accepted", "rejected", "condition"));
+      for (ConditionStats each : conditionStats) {
+        sb.append(String.format(Locale.ROOT, "%10d %10d %10s  %s%n", each.attempts, each.accepted, formatPercent(each.getRejectionRate()), each.name));
+      }
+    }
+    return sb.toString();
+  }
+
+  void printReport() {
+    System.out.print(getReport());
+  }
+
+  void writeTo(DataOutput out) throws IOException {
+    out.writeInt(generatedValues);
+    out.writeInt(unsatisfiedValues);
+    out.writeInt(duplicateValues);
+    List<ConditionStats> stats = getConditionStats();
+    out.writeInt(stats.size());
+    for (ConditionStats each : stats) {
+      out.writeUTF(each.name);
+      out.writeLong(each.attempts);
+      out.writeLong(each.accepted);
+    }
+  }
+
+  /** Restores the numbers written by {@link #writeTo}, the conditions are matched by their descriptions */
+  void readFrom(DataInput in) throws IOException {
+    generatedValues = in.readInt();
+    unsatisfiedValues = in.readInt();
+    duplicateValues = in.readInt();
+    for (int i = in.readInt(); i > 0; i--) {
+      ConditionStats stats = new ConditionStats(in.readUTF());
+      stats.attempts = in.readLong();
+      stats.accepted = in.readLong();
+      restoredConditions.add(stats);
+    }
+  }
+
+  static String formatPercent(double rate) {
+    return String.format(Locale.ROOT, "%.1f%%", rate * 100);
+  }
+
+  static class ConditionStats {
+    final String name;
+    long attempts;
+    long accepted;
+
+    ConditionStats(String name) {
+      this.name = name;
+    }
+
+    long getRejected() {
+      return attempts - accepted;
+    }
+
+    double getRejectionRate() {
+      return attempts == 0 ? 0 : (double)getRejected() / attempts;
+    }
+
+    void add(ConditionStats other) {
+      attempts += other.attempts;
+      accepted += other.accepted;
+    }
+  }
+}
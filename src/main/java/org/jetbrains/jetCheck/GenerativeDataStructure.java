@@ -3,6 +3,9 @@ package org.jetbrains.jetCheck;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.function.Predicate;
 
 
@@ -14,15 +17,20 @@ class GenerativeDataStructure extends AbstractDataStructure {
   private final IntSource random;
   private final int maxDepth;
   private final int depth;
+  /** On the root structure, the structure recording the items of lazy collections */
+  @Nullable private GenerativeDataStructure lazyItems;
+  private boolean hasLazyCollections;
 
-  GenerativeDataStructure(IntSource random, StructureNode node, int sizeHint, int maxDepth) {
-    this(null, random, node, sizeHint, maxDepth, 0);
+  GenerativeDataStructure(IntSource random, StructureNode node, int sizeHint, int maxDepth,
+                          @Nullable GeneratorProfiler profiler, @Nullable GenerationStatistics statistics) {
+    this(null, random, node, sizeHint, maxDepth, 0, profiler, statistics);
   }
 
-  private GenerativeDataStructure(@Nullable CurrentData dataTracker, IntSource random, StructureNode node, int sizeHint, int maxDepth, int depth) {
+  private GenerativeDataStructure(@Nullable CurrentData dataTracker, IntSource random, StructureNode node, int sizeHint, int maxDepth, int depth,
+                                  @Nullable GeneratorProfiler profiler, @Nullable GenerationStatistics statistics) {
     super(node, sizeHint);
     this.random = random;
-    this.dataTracker = dataTracker != null ? dataTracker : new CurrentData();
+    this.dataTracker = dataTracker != null ? dataTracker : new CurrentData(profiler, statistics);
     this.maxDepth = maxDepth;
     this.depth = depth;
   }
@@ -35,6 +43,52 @@ class GenerativeDataStructure extends AbstractDataStructure {
     return i;
   }
 
+  @Override
+  long drawLong(@NotNull LongDistribution distribution) {
+    ensureActiveStructure();
+    long l = random.drawLong(distribution);
+    node.addChild(new LongData(node.id.childId(null), l, distribution));
+    return l;
+  }
+
+  @Override
+  byte[] drawBytes(@NotNull IntDistribution length) {
+    ensureActiveStructure();
+    byte[] array = new byte[random.drawInt(length)];
+    random.drawBytes(array);
+    node.addChild(ArrayData.ofBytes(node.id.childId(null), array.clone(), length));
+    return array;
+  }
+
+  @Override
+  int[] drawInts(@NotNull IntDistribution length, @NotNull IntDistribution elements) {
+    ensureActiveStructure();
+    int[] array = new int[random.drawInt(length)];
+    random.drawInts(elements, array);
+    node.addChild(ArrayData.ofInts(node.id.childId(null), array.clone(), length, elements));
+    return array;
+  }
+
+  @Override
+  long[] drawLongs(@NotNull IntDistribution length, @NotNull LongDistribution elements) {
+    ensureActiveStructure();
+    long[] array = new long[random.drawInt(length)];
+    random.drawLongs(elements, array);
+    node.addChild(ArrayData.ofLongs(node.id.childId(null), array.clone(), length, elements));
+    return array;
+  }
+
+  @Override
+  public void classify(@NotNull String label) {
+    ensureActiveStructure();
+    dataTracker.addLabel(label);
+  }
+
+  /** @return the labels given to the value generated on this structure, see {@link #classify} */
+  List<String> getLabels() {
+    return dataTracker.labels == null ? Collections.emptyList() : dataTracker.labels;
+  }
+
   void ensureActiveStructure() {
     dataTracker.checkContext(this);
   }
@@ -44,13 +98,49 @@ class GenerativeDataStructure extends AbstractDataStructure {
     return dataTracker.generateOn(generator, subStructure(generator, childSizeHint()), this);
   }
 
+  @Override
+  public int generateInt(@NotNull IntGenerator generator) {
+    GenerativeDataStructure data = subStructure(generator, childSizeHint());
+    Object event = dataTracker.enter(generator, data, this);
+    try {
+      return generator.generateInt(data);
+    }
+    finally {
+      dataTracker.exit(event, generator, data, this);
+    }
+  }
+
+  @Override
+  public long generateLong(@NotNull LongGenerator generator) {
+    GenerativeDataStructure data = subStructure(generator, childSizeHint());
+    Object event = dataTracker.enter(generator, data, this);
+    try {
+      return generator.generateLong(data);
+    }
+    finally {
+      dataTracker.exit(event, generator, data, this);
+    }
+  }
+
+  @Override
+  public double generateDouble(@NotNull DoubleGenerator generator) {
+    GenerativeDataStructure data = subStructure(generator, childSizeHint());
+    Object event = dataTracker.enter(generator, data, this);
+    try {
+      return generator.generateDouble(data);
+    }
+    finally {
+      dataTracker.exit(event, generator, data, this);
+    }
+  }
+
   @NotNull
   private GenerativeDataStructure subStructure(@NotNull Generator<?> generator, int childSizeHint) {
     int childDepth = depth + 1;
     if (childDepth > maxDepth) {
       throw new GeneratorRecursedTooDeeply(maxDepth);
     }
-    return new GenerativeDataStructure(dataTracker, random, node.subStructure(generator), childSizeHint, maxDepth, childDepth);
+    return new GenerativeDataStructure(dataTracker, random, node.subStructure(generator), childSizeHint, maxDepth, childDepth, null, null);
   }
 
   @Override
@@ -62,20 +152,87 @@ class GenerativeDataStructure extends AbstractDataStructure {
 
   @Override
   <T> T generateConditional(@NotNull Generator<T> generator, @NotNull Predicate<? super T> condition) {
+    int labelCount = getLabels().size();
     for (int i = 0; i < 100; i++) {
       GenerativeDataStructure structure = subStructure(generator, childSizeHint());
       T value = dataTracker.generateOn(generator, structure, this);
-      if (condition.test(value)) return value;
+      boolean accepted = condition.test(value);
+      if (dataTracker.statistics != null) {
+        dataTracker.statistics.conditionChecked(generator, condition, accepted);
+      }
+      if (accepted) return value;
 
       if (random instanceof DataSerializer.SerializedIntSource) {
         throw DataSerializer.errorRestoringSerialized();
       }
 
       node.removeLastChild(structure.node);
+      dataTracker.removeLabelsAfter(labelCount);
     }
     throw new CannotSatisfyCondition(condition);
   }
 
+  @Override
+  <T> boolean generateAccepted(@NotNull Generator<T> generator, @NotNull Predicate<? super T> acceptor, int attempts) {
+    int labelCount = getLabels().size();
+    for (int i = 0; i < attempts; i++) {
+      GenerativeDataStructure structure = subStructure(generator, childSizeHint());
+      if (acceptor.test(dataTracker.generateOn(generator, structure, this))) return true;
+
+      if (random instanceof DataSerializer.SerializedIntSource) {
+        throw DataSerializer.errorRestoringSerialized();
+      }
+
+      node.removeLastChild(structure.node);
+      dataTracker.removeLabelsAfter(labelCount);
+    }
+    return false;
+  }
+
+  @Override
+  boolean changeCollectionSize(int size) {
+    IntData length = (IntData)node.children.get(0);
+    if (!length.distribution.isValidValue(size)) return false;
+
+    node.children.set(0, new IntData(length.id, size, length.distribution));
+    return true;
+  }
+
+  @Override
+  void lazyCollectionGenerated() {
+    dataTracker.root.hasLazyCollections = true;
+  }
+
+  /** Lazy collections generate their items after the data is checked for duplicates, so equal data doesn't mean equal values */
+  boolean hasLazyCollections() {
+    return hasLazyCollections;
+  }
+
+  @Override
+  <T> T generateLazyItem(@NotNull Generator<T> generator) {
+    GenerativeDataStructure root = dataTracker.root;
+    if (!root.generationFinished || dataTracker.current != root) {
+      throw new IllegalStateException(LAZY_ITEM_DURING_GENERATION);
+    }
+    if (root.lazyItems == null) {
+      StructureNode items = new StructureNode(root.node.id.childId(null));
+      items.kind = StructureKind.STREAM;
+      root.node.addChild(items);
+      root.lazyItems = new GenerativeDataStructure(dataTracker, random, items, root.sizeHint, maxDepth, 1, null, null);
+    }
+
+    dataTracker.current = root.lazyItems;
+    try {
+      return root.lazyItems.generate(generator);
+    }
+    catch (DataSerializer.EOFException e) {
+      throw DataSerializer.errorRestoringSerialized();
+    }
+    finally {
+      dataTracker.current = root;
+    }
+  }
+
   @Override
   void changeKind(StructureKind kind) {
     if (node.kind != StructureKind.GENERIC) {
@@ -85,16 +242,57 @@ class GenerativeDataStructure extends AbstractDataStructure {
   }
 
   private class CurrentData {
-    GenerationEnvironment current = GenerativeDataStructure.this;
+    final GenerativeDataStructure root = GenerativeDataStructure.this;
+    GenerationEnvironment current = root;
+    @Nullable final GeneratorProfiler profiler;
+    @Nullable final GenerationStatistics statistics;
+    @Nullable List<String> labels;
+
+    CurrentData(@Nullable GeneratorProfiler profiler, @Nullable GenerationStatistics statistics) {
+      this.profiler = profiler;
+      this.statistics = statistics;
+    }
 
     <T> T generateOn(Generator<T> gen, GenerativeDataStructure data, GenerativeDataStructure parent) {
-      checkContext(parent);
-      current = data;
+      Object event = enter(gen, data, parent);
       try {
         return gen.getGeneratorFunction().apply(data);
       }
       finally {
-        current = parent;
+        exit(event, gen, data, parent);
+      }
+    }
+
+    /** @return the Flight Recorder event to pass to {@link #exit} */
+    Object enter(Generator<?> gen, GenerativeDataStructure data, GenerativeDataStructure parent) {
+      checkContext(parent);
+      current = data;
+      Object event = FlightRecorderEvents.beginGeneration(data.depth);
+      if (profiler != null) {
+        profiler.enter(gen);
+      }
+      return event;
+    }
+
+    void exit(Object event, Generator<?> gen, GenerativeDataStructure data, GenerativeDataStructure parent) {
+      if (profiler != null) {
+        profiler.exit();
+      }
+      current = parent;
+      data.node.freeze();
+      FlightRecorderEvents.commitGeneration(event, gen, data.depth, data.node);
+    }
+
+    void addLabel(String label) {
+      if (labels == null) {
+        labels = new ArrayList<>();
+      }
+      labels.add(label);
+    }
+
+    void removeLabelsAfter(int count) {
+      if (labels != null && labels.size() > count) {
+        labels.subList(count, labels.size()).clear();
       }
     }
 
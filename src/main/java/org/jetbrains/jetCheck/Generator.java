@@ -1,6 +1,7 @@
 package org.jetbrains.jetCheck;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
 import java.util.function.BiFunction;
@@ -8,6 +9,8 @@ import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * A generator for objects based on random data from {@link GenerationEnvironment}.<p></p>
@@ -22,10 +25,20 @@ import java.util.stream.IntStream;
  */
 @SuppressWarnings("WeakerAccess")
 public class Generator<T> {
+  /** Whether to remember where the generators are created, to identify them in {@link GeneratorProfiler} reports */
+  private static final boolean CAPTURE_CREATION_SITES = Boolean.getBoolean("jetCheck.profile.creationSites");
   private final Function<GenerationEnvironment, T> myFunction;
+  @Nullable private final String myName;
+  @Nullable private final String myCreationSite;
 
   Generator(Function<GenerationEnvironment, T> function) {
+    this(function, null);
+  }
+
+  private Generator(Function<GenerationEnvironment, T> function, @Nullable String name) {
     myFunction = function;
+    myName = name;
+    myCreationSite = CAPTURE_CREATION_SITES ? GeneratorProfiler.getCreationSite() : null;
   }
 
   /**
@@ -50,6 +63,26 @@ public class Generator<T> {
     return myFunction;
   }
 
+  /**
+   * @return a generator producing the same values as this one, but having the given name,
+   * which is used to identify it in diagnostics (e.g. {@link PropertyChecker.Parameters#profileGenerators})
+   */
+  public Generator<T> named(@NotNull String name) {
+    return new Generator<>(myFunction, name);
+  }
+
+  /** @return the {@link #named name} of this generator, or else its creation site if it's captured, or else null */
+  @Nullable
+  String getDescription() {
+    return myName != null ? myName : myCreationSite;
+  }
+
+  @Override
+  public String toString() {
+    String description = getDescription();
+    return description != null ? description : myFunction.getClass().getName();
+  }
+
   /**
    * Invokes "this" generator, and then applies the given function to transform the generated value in any way.
    * The function should not depend on anything besides its argument.
@@ -203,14 +236,14 @@ public class Generator<T> {
 
   /** A generator that returns 'true' or 'false' */
   public static Generator<Boolean> booleans() {
-    return integers(0, 1).map(i -> i == 1);
+    return ints(0, 1).mapToObj(i -> i == 1);
   }
 
   // char generators
 
   /** Generates characters in the given range (both ends inclusive) */
   public static Generator<Character> charsInRange(char min, char max) {
-    return integers(min, max).map(i -> (char)i.intValue());
+    return ints(min, max).mapToObj(i -> (char)i);
   }
 
   /** Generates characters that occur in the given string */
@@ -267,12 +300,54 @@ public class Generator<T> {
     return sb.toString();
   }
 
-  /** Generates random strings consisting of ASCII letters and digits and starting with a letter */
+  /**
+   * Generates (possibly empty) strings of up to the current size hint code points in the given range (both ends inclusive),
+   * excluding surrogates, see {@link #strings(IntDistribution, int, int)}
+   */
+  public static Generator<String> strings(int minCodePoint, int maxCodePoint) {
+    CodePointDistribution codePoints = CodePointDistribution.range(minCodePoint, maxCodePoint);
+    return from(data -> drawString(data, IntDistribution.uniform(0, data.getSizeHint()), codePoints));
+  }
+
+  /**
+   * Generates strings of code points in the given range (both ends inclusive), with the number of code points (not chars) in the given distribution.
+   * Surrogate code points are never generated, so supplementary characters are always represented by well-formed pairs.
+   * Unlike {@link #stringsOf}, the code points are drawn in bulk and recorded as a single value,
+   * which is shrunk by truncating, deleting and zeroing (replacing by {@code minCodePoint}) ranges of whole code points.
+   */
+  public static Generator<String> strings(@NotNull IntDistribution length, int minCodePoint, int maxCodePoint) {
+    CodePointDistribution codePoints = CodePointDistribution.range(minCodePoint, maxCodePoint);
+    return from(data -> drawString(data, length, codePoints));
+  }
+
+  /** Generates (possibly empty) strings of any Unicode characters, see {@link #strings(IntDistribution, int, int)} */
+  public static Generator<String> unicodeStrings() {
+    return strings(0, Character.MAX_CODE_POINT);
+  }
+
+  private static String drawString(GenerationEnvironment data, IntDistribution length, IntDistribution codePoints) {
+    int[] array = ((AbstractDataStructure)data).drawInts(length, codePoints);
+    return new String(array, 0, array.length);
+  }
+
+  // letters with a preference for lowercase ones, then digits and '_' with the same weights as asciiIdentifiers used to have
+  private static final CodePointDistribution IDENTIFIER_START = new CodePointDistribution(new int[]{'a', 'z', 'A', 'Z', '_', '_'},
+                                                                                          new int[]{45, 5, 1});
+  private static final CodePointDistribution IDENTIFIER_PART = new CodePointDistribution(new int[]{'a', 'z', 'A', 'Z', '0', '9', '_', '_'},
+                                                                                         new int[]{45, 5, 5, 1});
+
+  /** Generates random strings consisting of ASCII letters, digits and underscores, and starting with a letter or an underscore */
   public static Generator<String> asciiIdentifiers() {
-    return stringsOf(frequency(50, asciiLetters(),
-                               5, digits(),
-                               1, constant('_')))
-      .suchThat(s -> s.length() > 0 && !Character.isDigit(s.charAt(0)));
+    return from(data -> {
+      AbstractDataStructure structure = (AbstractDataStructure)data;
+      int start = structure.drawInt(IDENTIFIER_START);
+      int[] rest = structure.drawInts(IntDistribution.uniform(0, Math.max(0, data.getSizeHint() - 1)), IDENTIFIER_PART);
+      StringBuilder sb = new StringBuilder(rest.length + 1).appendCodePoint(start);
+      for (int codePoint : rest) {
+        sb.appendCodePoint(codePoint);
+      }
+      return sb.toString();
+    });
   }
 
 
@@ -280,30 +355,89 @@ public class Generator<T> {
 
   /** Generates any integers */
   public static Generator<Integer> integers() {
-    return integers(BoundedIntDistribution.ALL_INTS);
+    return ints();
   }
 
   public static Generator<Integer> naturals() {
-    return integers(0, Integer.MAX_VALUE);
+    return ints(0, Integer.MAX_VALUE);
   }
 
   /** Generates integers uniformly distributed in the given range (both ends inclusive) */
   public static Generator<Integer> integers(int min, int max) {
-    return integers(IntDistribution.uniform(min, max));
+    return ints(min, max);
   }
 
   /** Generates integers with the given distribution */
   public static Generator<Integer> integers(@NotNull IntDistribution distribution) {
-    return from(data -> ((AbstractDataStructure)data).drawInt(distribution));
+    return ints(distribution);
+  }
+
+  /** Like {@link #integers()}, but returns an {@link IntGenerator} to run without boxing */
+  public static IntGenerator ints() {
+    return ints(BoundedIntDistribution.ALL_INTS);
+  }
+
+  /** Like {@link #integers(int, int)}, but returns an {@link IntGenerator} to run without boxing */
+  public static IntGenerator ints(int min, int max) {
+    return ints(IntDistribution.uniform(min, max));
+  }
+
+  /** Like {@link #integers(IntDistribution)}, but returns an {@link IntGenerator} to run without boxing */
+  public static IntGenerator ints(@NotNull IntDistribution distribution) {
+    return new IntGenerator(data -> ((AbstractDataStructure)data).drawInt(distribution));
+  }
+
+  /** Generates any longs */
+  public static LongGenerator longs() {
+    return longs(BoundedLongDistribution.ALL_LONGS);
+  }
+
+  /** Generates longs uniformly distributed in the given range (both ends inclusive) */
+  public static LongGenerator longs(long min, long max) {
+    return longs(LongDistribution.uniform(min, max));
+  }
+
+  /** Generates longs with the given distribution. Each long is recorded as a single value, which shrinks as a whole. */
+  public static LongGenerator longs(@NotNull LongDistribution distribution) {
+    return new LongGenerator(data -> ((AbstractDataStructure)data).drawLong(distribution));
   }
 
   /** Generates any doubles, including infinities and NaN */
   public static Generator<Double> doubles() {
-    return from(data -> {
-      long i1 = data.generate(integers(BoundedIntDistribution.ALL_INTS));
-      long i2 = data.generate(integers(BoundedIntDistribution.ALL_INTS));
-      return Double.longBitsToDouble((i1 << 32) + (i2 & 0xffffffffL));
-    });
+    return doubleValues();
+  }
+
+  /** Like {@link #doubles()}, but returns a {@link DoubleGenerator} to run without boxing */
+  public static DoubleGenerator doubleValues() {
+    return new DoubleGenerator(data -> Double.longBitsToDouble(((AbstractDataStructure)data).drawLong(BoundedLongDistribution.ALL_LONGS)));
+  }
+
+  // arrays
+
+  /** Generates byte arrays of lengths up to the current size hint, see {@link #byteArrays(int, int)} */
+  public static Generator<byte[]> byteArrays() {
+    return from(data -> ((AbstractDataStructure)data).drawBytes(IntDistribution.uniform(0, data.getSizeHint())));
+  }
+
+  /**
+   * Generates byte arrays with lengths in the given range (both ends inclusive). The bytes are drawn in bulk and recorded as a single value,
+   * which makes it much faster than {@code listsOf} for large arrays, and the arrays are shrunk by truncating, deleting and zeroing ranges.
+   */
+  public static Generator<byte[]> byteArrays(int minLength, int maxLength) {
+    IntDistribution length = IntDistribution.uniform(minLength, maxLength);
+    return from(data -> ((AbstractDataStructure)data).drawBytes(length));
+  }
+
+  /** Generates int arrays with lengths in the given range (both ends inclusive) and elements in the given distribution, like {@link #byteArrays(int, int)} */
+  public static Generator<int[]> intArrays(@NotNull IntDistribution elements, int minLength, int maxLength) {
+    IntDistribution length = IntDistribution.uniform(minLength, maxLength);
+    return from(data -> ((AbstractDataStructure)data).drawInts(length, elements));
+  }
+
+  /** Generates long arrays with lengths in the given range (both ends inclusive) and elements in the given distribution, like {@link #byteArrays(int, int)} */
+  public static Generator<long[]> longArrays(@NotNull LongDistribution elements, int minLength, int maxLength) {
+    IntDistribution length = IntDistribution.uniform(minLength, maxLength);
+    return from(data -> ((AbstractDataStructure)data).drawLongs(length, elements));
   }
 
   // lists
@@ -331,4 +465,148 @@ public class Generator<T> {
     }
     return Collections.unmodifiableList(list);
   }
+
+  // lazy collections
+
+  /**
+   * Generates iterators over up to the current size hint values produced by the given generator, see {@link #iteratorsOf(IntDistribution, Generator)}
+   */
+  public static <T> Generator<Iterator<T>> iteratorsOf(Generator<T> itemGenerator) {
+    return from(data -> new LazyIterator<>((AbstractDataStructure)data, ((AbstractDataStructure)data).suggestCollectionSize(), itemGenerator));
+  }
+
+  /**
+   * Generates iterators whose length is determined by the given distribution, and whose items are generated only when the property
+   * requests them, after the whole value has been generated. Only the consumed items are recorded, so memory stays proportional
+   * to what the property consumes even for huge lengths, and those items are shrunk like list items.
+   * Iterators can't be consumed by generators.
+   */
+  public static <T> Generator<Iterator<T>> iteratorsOf(IntDistribution length, Generator<T> itemGenerator) {
+    return from(data -> new LazyIterator<>((AbstractDataStructure)data, ((AbstractDataStructure)data).drawInt(length), itemGenerator));
+  }
+
+  /** Generates sequential streams over the items of {@link #iteratorsOf(Generator)} */
+  public static <T> Generator<Stream<T>> streamsOf(Generator<T> itemGenerator) {
+    return iteratorsOf(itemGenerator).map(Generator::toStream);
+  }
+
+  /** Generates sequential streams over the items of {@link #iteratorsOf(IntDistribution, Generator)} */
+  public static <T> Generator<Stream<T>> streamsOf(IntDistribution length, Generator<T> itemGenerator) {
+    return iteratorsOf(length, itemGenerator).map(Generator::toStream);
+  }
+
+  private static <T> Stream<T> toStream(Iterator<T> iterator) {
+    return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED), false);
+  }
+
+  private static class LazyIterator<T> implements Iterator<T> {
+    private final AbstractDataStructure data;
+    private final int length;
+    private final Generator<T> itemGenerator;
+    private int consumed;
+
+    LazyIterator(AbstractDataStructure data, int length, Generator<T> itemGenerator) {
+      this.data = data;
+      this.length = length;
+      this.itemGenerator = itemGenerator;
+      data.lazyCollectionGenerated();
+    }
+
+    @Override
+    public boolean hasNext() {
+      return consumed < length;
+    }
+
+    @Override
+    public T next() {
+      if (!hasNext()) throw new NoSuchElementException();
+      consumed++;
+      return data.generateLazyItem(itemGenerator);
+    }
+
+    @Override
+    public String toString() {
+      return "Iterator(" + consumed + " of " + length + " consumed)";
+    }
+  }
+
+  // collections of unique elements
+
+  /** How many times a colliding element is re-drawn before the collection is left smaller than initially planned */
+  private static final int UNIQUE_ELEMENT_ATTEMPTS = 10;
+
+  /**
+   * Generates (possibly empty) sets of values produced by the given generator. Only colliding elements are re-drawn,
+   * a limited number of times, so a set may be smaller than initially planned if the generator produces few distinct values.
+   * The sets iterate in the generation order.
+   */
+  public static <T> Generator<Set<T>> setsOf(Generator<T> itemGenerator) {
+    return from(data -> generateSet(itemGenerator, data, ((AbstractDataStructure)data).suggestCollectionSize()));
+  }
+
+  /** Generates sets of values produced by the given generator, with the planned size determined by the given distribution, see {@link #setsOf(Generator)} */
+  public static <T> Generator<Set<T>> setsOf(IntDistribution size, Generator<T> itemGenerator) {
+    return from(data -> generateSet(itemGenerator, data, ((AbstractDataStructure)data).drawInt(size)));
+  }
+
+  /** Generates (possibly empty) lists of distinct values produced by the given generator, see {@link #setsOf(Generator)} */
+  public static <T> Generator<List<T>> uniqueListsOf(Generator<T> itemGenerator) {
+    return from(data -> generateUniqueList(itemGenerator, data, ((AbstractDataStructure)data).suggestCollectionSize()));
+  }
+
+  /** Generates lists of distinct values produced by the given generator, with the planned length determined by the given distribution, see {@link #setsOf(Generator)} */
+  public static <T> Generator<List<T>> uniqueListsOf(IntDistribution length, Generator<T> itemGenerator) {
+    return from(data -> generateUniqueList(itemGenerator, data, ((AbstractDataStructure)data).drawInt(length)));
+  }
+
+  /** Generates (possibly empty) maps with keys and values produced by the given generators, see {@link #setsOf(Generator)} */
+  public static <K, V> Generator<Map<K, V>> mapsOf(Generator<K> keyGenerator, Generator<V> valueGenerator) {
+    Generator<Map.Entry<K, V>> entries = entries(keyGenerator, valueGenerator);
+    return from(data -> generateMap(entries, data, ((AbstractDataStructure)data).suggestCollectionSize()));
+  }
+
+  /** Generates maps with keys and values produced by the given generators, with the planned size determined by the given distribution, see {@link #setsOf(Generator)} */
+  public static <K, V> Generator<Map<K, V>> mapsOf(IntDistribution size, Generator<K> keyGenerator, Generator<V> valueGenerator) {
+    Generator<Map.Entry<K, V>> entries = entries(keyGenerator, valueGenerator);
+    return from(data -> generateMap(entries, data, ((AbstractDataStructure)data).drawInt(size)));
+  }
+
+  private static <K, V> Generator<Map.Entry<K, V>> entries(Generator<K> keyGenerator, Generator<V> valueGenerator) {
+    return from(data -> new AbstractMap.SimpleImmutableEntry<>(data.generate(keyGenerator), data.generate(valueGenerator)));
+  }
+
+  private static <T> Set<T> generateSet(Generator<T> itemGenerator, GenerationEnvironment data, int size) {
+    Set<T> set = new LinkedHashSet<>();
+    generateUnique(itemGenerator, data, size, set::add);
+    return Collections.unmodifiableSet(set);
+  }
+
+  private static <T> List<T> generateUniqueList(Generator<T> itemGenerator, GenerationEnvironment data, int size) {
+    Set<T> seen = new HashSet<>();
+    List<T> list = new ArrayList<>(size);
+    generateUnique(itemGenerator, data, size, item -> seen.add(item) && list.add(item));
+    return Collections.unmodifiableList(list);
+  }
+
+  private static <K, V> Map<K, V> generateMap(Generator<Map.Entry<K, V>> entries, GenerationEnvironment data, int size) {
+    Map<K, V> map = new LinkedHashMap<>();
+    generateUnique(entries, data, size, entry -> {
+      if (map.containsKey(entry.getKey())) return false;
+      map.put(entry.getKey(), entry.getValue());
+      return true;
+    });
+    return Collections.unmodifiableMap(map);
+  }
+
+  /** Generates a list-like structure whose items are re-drawn until accepted, and which ends early if an item can't be accepted */
+  private static <T> void generateUnique(Generator<T> itemGenerator, GenerationEnvironment data, int size, Predicate<? super T> acceptor) {
+    AbstractDataStructure structure = (AbstractDataStructure)data;
+    structure.changeKind(StructureKind.LIST);
+    for (int i = 0; i < size; i++) {
+      if (!structure.generateAccepted(itemGenerator, acceptor, UNIQUE_ELEMENT_ATTEMPTS)) {
+        if (!structure.changeCollectionSize(i)) throw new CannotSatisfyCondition(acceptor);
+        return;
+      }
+    }
+  }
 }
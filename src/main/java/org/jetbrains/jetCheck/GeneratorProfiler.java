@@ -0,0 +1,166 @@
+package org.jetbrains.jetCheck;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Attributes the time and memory spent in generation to individual generators, see {@link PropertyChecker.Parameters#profileGenerators}.
+ * "Total" numbers include the nested generator invocations, "self" ones don't. Generators are identified by
+ * {@link Generator#named their names}, or creation sites if {@code jetCheck.profile.creationSites} system property is set,
+ * or else by their function classes.
+ */
+@SuppressWarnings("UseOfSystemOutOrSystemErr")
+class GeneratorProfiler {
+  /** The classes whose frames are skipped when looking for the {@link #getCreationSite creation site}, including their nested classes */
+  private static final Set<String> GENERATOR_FACTORIES = new HashSet<>(Arrays.asList(
+    GeneratorProfiler.class.getName(), Generator.class.getName(), IntGenerator.class.getName(), LongGenerator.class.getName(),
+    DoubleGenerator.class.getName(), RecursiveGenerator.class.getName(), ImperativeCommand.class.getName(), Scenario.class.getName()));
+  /** Obtained only when profiling is on, since it enables allocation tracking for the whole JVM */
+  @Nullable private final com.sun.management.ThreadMXBean allocationBean;
+  private final Map<Generator<?>, Stats> stats = new IdentityHashMap<>();
+  private final int reportSize;
+  private Frame[] stack = new Frame[16];
+  private int depth;
+
+  GeneratorProfiler(int reportSize) {
+    this.reportSize = reportSize;
+    allocationBean = findAllocationBean();
+  }
+
+  @Nullable
+  private static com.sun.management.ThreadMXBean findAllocationBean() {
+    ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    if (bean instanceof com.sun.management.ThreadMXBean && ((com.sun.management.ThreadMXBean)bean).isThreadAllocatedMemorySupported()) {
+      ((com.sun.management.ThreadMXBean)bean).setThreadAllocatedMemoryEnabled(true);
+      return (com.sun.management.ThreadMXBean)bean;
+    }
+    return null;
+  }
+
+  private long allocatedBytes() {
+    return allocationBean == null ? 0 : allocationBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+
+  void enter(@NotNull Generator<?> generator) {
+    if (depth == stack.length) {
+      stack = Arrays.copyOf(stack, depth * 2);
+    }
+    Frame frame = stack[depth];
+    if (frame == null) {
+      frame = stack[depth] = new Frame();
+    }
+    depth++;
+    frame.stats = stats.computeIfAbsent(generator, Stats::new);
+    frame.childNanos = frame.childBytes = 0;
+    frame.startBytes = allocatedBytes();
+    frame.startNanos = System.nanoTime();
+  }
+
+  void exit() {
+    long nanos = System.nanoTime();
+    long bytes = allocatedBytes();
+    Frame frame = stack[--depth];
+    long totalNanos = nanos - frame.startNanos;
+    long totalBytes = bytes - frame.startBytes;
+    Stats stats = frame.stats;
+    stats.calls++;
+    stats.totalNanos += totalNanos;
+    stats.selfNanos += totalNanos - frame.childNanos;
+    stats.totalBytes += totalBytes;
+    stats.selfBytes += totalBytes - frame.childBytes;
+    if (depth > 0) {
+      stack[depth - 1].childNanos += totalNanos;
+      stack[depth - 1].childBytes += totalBytes;
+    }
+    frame.stats = null;
+  }
+
+  /** @return the accumulated numbers, grouped by generator descriptions and sorted by self time, descending */
+  List<Stats> getReport() {
+    Map<String, Stats> byName = new LinkedHashMap<>();
+    for (Stats each : stats.values()) {
+      byName.computeIfAbsent(each.name, Stats::new).add(each);
+    }
+    List<Stats> result = new ArrayList<>(byName.values());
+    result.sort(Comparator.comparingLong((Stats s) -> s.selfNanos).reversed());
+    return result.subList(0, Math.min(reportSize, result.size()));
+  }
+
+  void printReport() {
+    List<Stats> report = getReport();
+    if (report.isEmpty()) return;
+
+    StringBuilder sb = new StringBuilder("Generator profile (top " + report.size() + " by self time" +
+                                         (allocationBean == null ? ", allocation tracking unsupported" : "") + "):\n");
+    sb.append(String.format(Locale.ROOT, "%10s %12s %12s %12s %12s  %s%n", "calls", "self ms", "total ms", "self KB", "total KB", "generator"));
+    for (Stats each : report) {
+      sb.append(String.format(Locale.ROOT, "%10d %12.1f %12.1f %12d %12d  %s%n",
+                              each.calls, toMillis(each.selfNanos), toMillis(each.totalNanos),
+                              each.selfBytes / 1024, each.totalBytes / 1024, each.name));
+    }
+    System.out.print(sb);
+  }
+
+  private static double toMillis(long nanos) {
+    return (double)nanos / TimeUnit.MILLISECONDS.toNanos(1);
+  }
+
+  /**
+   * @return the first frame outside the {@link #GENERATOR_FACTORIES library classes creating generators}, prefixed by the library method
+   * it called (e.g. {@code listsOf at MyTest.java:42})
+   */
+  @NotNull
+  static String getCreationSite() {
+    StackTraceElement[] trace = new Throwable().getStackTrace();
+    for (int i = 1; i < trace.length; i++) {
+      if (!isGeneratorFactory(trace[i].getClassName())) {
+        String method = trace[i - 1].getMethodName();
+        return (method.equals("<init>") ? "" : method + " at ") + trace[i];
+      }
+    }
+    return "<unknown>";
+  }
+
+  private static boolean isGeneratorFactory(String className) {
+    int nested = className.indexOf('$');
+    return GENERATOR_FACTORIES.contains(nested < 0 ? className : className.substring(0, nested));
+  }
+
+  private static class Frame {
+    Stats stats;
+    long startNanos;
+    long startBytes;
+    long childNanos;
+    long childBytes;
+  }
+
+  static class Stats {
+    final String name;
+    long calls;
+    long selfNanos;
+    long totalNanos;
+    long selfBytes;
+    long totalBytes;
+
+    Stats(Generator<?> generator) {
+      this(generator.toString());
+    }
+
+    Stats(String name) {
+      this.name = name;
+    }
+
+    void add(Stats other) {
+      calls += other.calls;
+      selfNanos += other.selfNanos;
+      totalNanos += other.totalNanos;
+      selfBytes += other.selfBytes;
+      totalBytes += other.totalBytes;
+    }
+  }
+}
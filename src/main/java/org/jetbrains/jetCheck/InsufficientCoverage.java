@@ -0,0 +1,12 @@
+package org.jetbrains.jetCheck;
+
+/**
+ * Thrown after a successful check if the checked values didn't satisfy some {@link PropertyChecker.Parameters#withCoverage coverage requirement}
+ * even after additional iterations. This means the generators produce the required kind of values too rarely, or not at all.
+ */
+@SuppressWarnings("ExceptionClassNameDoesntEndWithException")
+public class InsufficientCoverage extends RuntimeException {
+  InsufficientCoverage(String problem, int iterationCount, String report) {
+    super("Insufficient coverage after " + iterationCount + " iterations: " + problem + "\n" + report);
+  }
+}
@@ -1,10 +1,7 @@
 // Copyright 2000-2017 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
 package org.jetbrains.jetCheck;
 
-import org.jetbrains.annotations.Nullable;
-
-import java.util.*;
-import java.util.stream.Collectors;
+import java.util.Arrays;
 
 /**
  * @author peter
@@ -23,29 +20,33 @@ interface IntCustomizer {
 
 }
 
+/**
+ * Replays ints whose distribution has changed since they were generated (e.g. when a shrunk list length changes a range)
+ * by trying several candidate values for each of them, in all combinations. The candidates are stored in primitive arrays
+ * indexed by slots assigned in the order the ints are encountered, and the combinations are enumerated in place by {@link #nextAttempt},
+ * like an odometer, so that trying them doesn't allocate.
+ */
 class CombinatorialIntCustomizer implements IntCustomizer {
-  private final LinkedHashMap<NodeId, Set<Integer>> valuesToTry;
-  private final Map<NodeId, Integer> currentCombination;
-  private final Map<NodeId, IntDistribution> changedDistributions = new HashMap<>();
-
-  CombinatorialIntCustomizer() {
-    this(new LinkedHashMap<>(), new HashMap<>());
-  }
-
-  private CombinatorialIntCustomizer(LinkedHashMap<NodeId, Set<Integer>> valuesToTry, Map<NodeId, Integer> currentCombination) {
-    this.valuesToTry = valuesToTry;
-    this.currentCombination = currentCombination;
-  }
+  /** slot + 1 for each {@link NodeId#number}, 0 if the node has no slot */
+  private int[] slotsByNumber = new int[16];
+  private NodeId[] ids = new NodeId[4];
+  private int[][] valuesToTry = new int[4][];
+  /** the index in {@link #valuesToTry} of the value used in the current combination, for each slot */
+  private int[] currentCombination = new int[4];
+  /** the distributions encountered in the current attempt, null for the slots not reached */
+  private IntDistribution[] changedDistributions = new IntDistribution[4];
+  private int slotCount;
 
   public int suggestInt(IntData data, IntDistribution currentDistribution) {
-    if (registerDifferentRange(data, currentDistribution, data.distribution)) {
-      return suggestCombinatorialVariant(data, currentDistribution);
+    int slot = registerDifferentRange(data, currentDistribution, data.distribution);
+    if (slot >= 0) {
+      return suggestCombinatorialVariant(slot, currentDistribution);
     }
     return IntCustomizer.checkValidInt(data, currentDistribution);
   }
 
-  private int suggestCombinatorialVariant(IntData data, IntDistribution currentDistribution) {
-    int value = currentCombination.computeIfAbsent(data.id, __ -> valuesToTry.get(data.id).iterator().next());
+  private int suggestCombinatorialVariant(int slot, IntDistribution currentDistribution) {
+    int value = valuesToTry[slot][currentCombination[slot]];
     if (currentDistribution.isValidValue(value)) {
       return value;
     }
@@ -53,26 +54,55 @@ class CombinatorialIntCustomizer implements IntCustomizer {
     throw new CannotRestoreValue();
   }
 
-  private boolean registerDifferentRange(IntData data, IntDistribution current, IntDistribution original) {
-    if (currentCombination.containsKey(data.id)) {
-      changedDistributions.put(data.id, current);
-      return true;
+  /** @return the slot of the given int if its value should be chosen combinatorially, otherwise -1 */
+  private int registerDifferentRange(IntData data, IntDistribution current, IntDistribution original) {
+    int slot = findSlot(data.id);
+    if (slot >= 0) {
+      changedDistributions[slot] = current;
+      return slot;
     }
 
     if (original.getMax() != current.getMax() || original.getMin() != current.getMin()) {
-      LinkedHashSet<Integer> possibleValues = getPossibleValues(data, current, original);
-      if (!possibleValues.isEmpty()) {
-        assert !valuesToTry.containsKey(data.id);
-        valuesToTry.put(data.id, possibleValues);
-        changedDistributions.put(data.id, current);
-        return true;
+      int[] possibleValues = getPossibleValues(data, current, original);
+      if (possibleValues.length > 0) {
+        slot = addSlot(data.id, possibleValues);
+        changedDistributions[slot] = current;
+        return slot;
       }
     }
-    return false;
+    return -1;
+  }
+
+  /**
+   * The ids are compared by identity: a step re-applied to a {@link StructureElement#renumber renumbered} structure
+   * produces other ids with the same numbers, and those get new slots.
+   */
+  private int findSlot(NodeId id) {
+    int slot = id.number < slotsByNumber.length ? slotsByNumber[id.number] - 1 : -1;
+    return slot >= 0 && ids[slot] == id ? slot : -1;
+  }
+
+  private int addSlot(NodeId id, int[] possibleValues) {
+    if (id.number >= slotsByNumber.length) {
+      slotsByNumber = Arrays.copyOf(slotsByNumber, Math.max(id.number + 1, slotsByNumber.length * 2));
+    }
+    if (slotCount == ids.length) {
+      ids = Arrays.copyOf(ids, slotCount * 2);
+      valuesToTry = Arrays.copyOf(valuesToTry, slotCount * 2);
+      currentCombination = Arrays.copyOf(currentCombination, slotCount * 2);
+      changedDistributions = Arrays.copyOf(changedDistributions, slotCount * 2);
+    }
+    int slot = slotCount++;
+    slotsByNumber[id.number] = slot + 1;
+    ids[slot] = id;
+    valuesToTry[slot] = possibleValues;
+    return slot;
   }
 
-  private LinkedHashSet<Integer> getPossibleValues(IntData data, IntDistribution current, IntDistribution original) {
-    List<Integer> possibleValues = new ArrayList<>();
+  /** @return distinct values valid in the current distribution, the most promising first */
+  private int[] getPossibleValues(IntData data, IntDistribution current, IntDistribution original) {
+    int[] candidates = new int[3];
+    int count = 0;
     int fromStart = data.value - original.getMin();
     int fromEnd = original.getMax() - data.value;
 
@@ -81,53 +111,76 @@ class CombinatorialIntCustomizer implements IntCustomizer {
 
     if (!tooManyCombinations()) {
       if (fromStart < fromEnd) {
-        possibleValues.add(sameDistanceFromStart);
-        possibleValues.add(sameDistanceFromEnd);
+        candidates[count++] = sameDistanceFromStart;
+        candidates[count++] = sameDistanceFromEnd;
       } else {
-        possibleValues.add(sameDistanceFromEnd);
-        possibleValues.add(sameDistanceFromStart);
+        candidates[count++] = sameDistanceFromEnd;
+        candidates[count++] = sameDistanceFromStart;
+      }
+    }
+    candidates[count++] = data.value;
+
+    int[] result = new int[count];
+    int distinct = 0;
+    for (int i = 0; i < count; i++) {
+      int value = Math.min(Math.max(candidates[i], current.getMin()), current.getMax());
+      if (current.isValidValue(value) && !contains(result, distinct, value)) {
+        result[distinct++] = value;
       }
     }
-    possibleValues.add(data.value);
-    
-    return possibleValues.stream()
-                         .map(value -> Math.min(Math.max(value, current.getMin()), current.getMax()))
-                         .filter(current::isValidValue)
-                         .collect(Collectors.toCollection(LinkedHashSet::new));
+    return distinct == count ? result : Arrays.copyOf(result, distinct);
+  }
+
+  private static boolean contains(int[] array, int length, int value) {
+    for (int i = 0; i < length; i++) {
+      if (array[i] == value) return true;
+    }
+    return false;
   }
 
   private boolean tooManyCombinations() {
-    return valuesToTry.values().stream().filter(s -> s.size() > 1).count() > 3;
+    int count = 0;
+    for (int slot = 0; slot < slotCount; slot++) {
+      if (valuesToTry[slot].length > 1) count++;
+    }
+    return count > 3;
   }
 
-  @Nullable
-  CombinatorialIntCustomizer nextAttempt() {
-    Map<NodeId, Integer> nextCombination = new HashMap<>(currentCombination);
-    for (Map.Entry<NodeId, Set<Integer>> entry : valuesToTry.entrySet()) {
-      List<Integer> possibleValues = new ArrayList<>(entry.getValue());
-      Integer usedValue = currentCombination.get(entry.getKey());
-      int index = possibleValues.indexOf(usedValue);
-      if (index < possibleValues.size() - 1) {
-        // found a position which can be incremented by 1
-        nextCombination.put(entry.getKey(), possibleValues.get(index + 1));
-        return new CombinatorialIntCustomizer(valuesToTry, nextCombination);
+  /**
+   * Switches to the next combination of the candidate values, incrementing the first slot which can be incremented,
+   * and resetting the preceding ones.
+   * @return false if all the combinations have been tried
+   */
+  boolean nextAttempt() {
+    Arrays.fill(changedDistributions, 0, slotCount, null);
+    for (int slot = 0; slot < slotCount; slot++) {
+      if (currentCombination[slot] < valuesToTry[slot].length - 1) {
+        currentCombination[slot]++;
+        return true;
       }
       // digit overflow in this position, so zero it and try incrementing the next one
-      nextCombination.put(entry.getKey(), possibleValues.get(0));
+      currentCombination[slot] = 0;
     }
-    return null;
+    return false;
   }
 
   StructureNode writeChanges(StructureNode node) {
     StructureNode result = node;
-    for (Map.Entry<NodeId, IntDistribution> entry : changedDistributions.entrySet()) {
-      NodeId id = entry.getKey();
-      result = result.replace(id, new IntData(id, currentCombination.get(id), entry.getValue()));
+    for (int slot = 0; slot < slotCount; slot++) {
+      IntDistribution distribution = changedDistributions[slot];
+      if (distribution != null) {
+        NodeId id = ids[slot];
+        result = result.replace(id, new IntData(id, valuesToTry[slot][currentCombination[slot]], distribution));
+      }
     }
     return result;
   }
 
   int countVariants() {
-    return valuesToTry.values().stream().mapToInt(Set::size).reduce(1, (a, b) -> a*b);
+    int result = 1;
+    for (int slot = 0; slot < slotCount; slot++) {
+      result *= valuesToTry[slot].length;
+    }
+    return result;
   }
-}
\ No newline at end of file
+}
@@ -0,0 +1,35 @@
+package org.jetbrains.jetCheck;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.function.IntFunction;
+import java.util.function.IntUnaryOperator;
+import java.util.function.ToIntFunction;
+
+/**
+ * A generator of ints (e.g. {@link Generator#ints}), which can be run via {@link GenerationEnvironment#generateInt}
+ * without boxing the results. It records the same data as when run via {@link GenerationEnvironment#generate},
+ * so the results shrink and {@link PropertyFailure.CounterExample#getSerializedData serialize} the same way.
+ */
+public final class IntGenerator extends Generator<Integer> {
+  private final ToIntFunction<GenerationEnvironment> myIntFunction;
+
+  IntGenerator(@NotNull ToIntFunction<GenerationEnvironment> function) {
+    super(function::applyAsInt);
+    myIntFunction = function;
+  }
+
+  int generateInt(@NotNull GenerationEnvironment data) {
+    return myIntFunction.applyAsInt(data);
+  }
+
+  /** Like {@link #map}, but without boxing */
+  public IntGenerator mapToInt(@NotNull IntUnaryOperator fun) {
+    return new IntGenerator(data -> fun.applyAsInt(myIntFunction.applyAsInt(data)));
+  }
+
+  /** Like {@link #map}, but without boxing the generated ints */
+  public <V> Generator<V> mapToObj(@NotNull IntFunction<? extends V> fun) {
+    return from(data -> fun.apply(myIntFunction.applyAsInt(data)));
+  }
+}
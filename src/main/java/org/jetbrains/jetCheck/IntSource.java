@@ -23,4 +23,46 @@ public interface IntSource {
    * @return the drawn int
    */
   int drawInt(IntDistribution distribution);
+
+  /**
+   * Returns the next long, which must satisfy the given distribution (see {@link LongDistribution#isValidValue}).
+   * By default, it's assembled from two {@link #drawInt} calls (the high half first) and, if that doesn't fit the distribution,
+   * wrapped into its range; override it if the source can supply 64-bit values natively.
+   *
+   * @param distribution the distribution the returned value must belong to
+   * @return the drawn long
+   */
+  default long drawLong(LongDistribution distribution) {
+    long high = drawInt(BoundedIntDistribution.ALL_INTS);
+    long low = drawInt(BoundedIntDistribution.ALL_INTS);
+    long value = (high << 32) + (low & 0xffffffffL);
+    if (distribution.isValidValue(value)) return value;
+
+    long rangeSize = distribution.getMax() - distribution.getMin() + 1;
+    return distribution.getMin() + Long.remainderUnsigned(value, rangeSize);
+  }
+
+  /**
+   * Fills the given array with the next bytes. By default, draws an int for each of them; override it if the source
+   * can supply bytes in bulk.
+   */
+  default void drawBytes(byte[] target) {
+    for (int i = 0; i < target.length; i++) {
+      target[i] = (byte)drawInt(BoundedIntDistribution.ALL_BYTES);
+    }
+  }
+
+  /** Fills the given array with the next ints satisfying the given distribution, by default drawing them one by one */
+  default void drawInts(IntDistribution distribution, int[] target) {
+    for (int i = 0; i < target.length; i++) {
+      target[i] = drawInt(distribution);
+    }
+  }
+
+  /** Fills the given array with the next longs satisfying the given distribution, by default drawing them one by one */
+  default void drawLongs(LongDistribution distribution, long[] target) {
+    for (int i = 0; i < target.length; i++) {
+      target[i] = drawLong(distribution);
+    }
+  }
 }
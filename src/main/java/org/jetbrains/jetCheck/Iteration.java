@@ -2,6 +2,10 @@ package org.jetbrains.jetCheck;
 
 import org.jetbrains.annotations.Nullable;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
@@ -27,11 +31,28 @@ class Iteration<T> {
   final int sizeHint;
   final int iterationNumber;
   private Random random;
+  /**
+   * The corpus entry replayed by the first attempt of this iteration, with the header already read. Its size hint becomes the iteration's one,
+   * so that the replayed value can be shrunk. Its seed is the {@link #iterationSeed} of that attempt, continuing the replay when the entry's data ends,
+   * while {@link #random} (and so the following iterations) still comes from the global seed.
+   */
+  @Nullable private final DataSerializer.SerializedIntSource corpusData;
 
   Iteration(CheckSession<T> session, long iterationSeed, int iterationNumber) {
+    this(session, iterationSeed, iterationNumber, session.readCorpusEntry(iterationNumber));
+  }
+
+  private Iteration(CheckSession<T> session, long iterationSeed, int iterationNumber, @Nullable DataSerializer.SerializedIntSource corpusData) {
+    this(session, iterationSeed, iterationNumber,
+         corpusData != null ? corpusData.sizeHint : session.parameters.sizeHintFun.applyAsInt(iterationNumber), corpusData);
+  }
+
+  private Iteration(CheckSession<T> session, long iterationSeed, int iterationNumber, int sizeHint,
+                    @Nullable DataSerializer.SerializedIntSource corpusData) {
     this.session = session;
-    this.sizeHint = session.parameters.sizeHintFun.applyAsInt(iterationNumber);
+    this.sizeHint = sizeHint;
     this.iterationNumber = iterationNumber;
+    this.corpusData = corpusData;
     if (sizeHint < 0) {
       throw new IllegalArgumentException("Size hint should be non-negative, found " + sizeHint);
     }
@@ -45,46 +66,102 @@ class Iteration<T> {
 
   @Nullable
   private CounterExampleImpl<T> findCounterExample() {
-    for (int i = 0; i < 100; i++) {
-      if (i > 0) {
-        initSeed(random.nextLong());
-      }
-
-      ScheduledFuture<?> printSeeds = session.executor.schedule(
-              () -> System.out.println("An iteration is running for too long, " + printSeeds()),
-              1, TimeUnit.MINUTES);
-      try {
-        StructureNode node = new StructureNode(new NodeId(session.generator));
-        T value;
-        try {
-          IntSource source = session.parameters.serializedData != null ? session.parameters.serializedData : d -> d.generateInt(random);
-          value = session.generator.getGeneratorFunction().apply(new GenerativeDataStructure(source, node, sizeHint, session.parameters.maxGenerationDepth));
-        }
-        catch (CannotSatisfyCondition e) {
-          continue;
-        }
-        catch (DataSerializer.EOFException e) {
-          session.notifier.eofException();
-          return null;
+    Object event = FlightRecorderEvents.beginIteration();
+    StructureNode node = null;
+    // stays true when the generator throws
+    boolean failed = true;
+    try {
+      for (int i = 0; i < 100; i++) {
+        if (i > 0) {
+          initSeed(random.nextLong());
         }
-        catch (WrongDataStructure e) {
-          throw e;
+        else if (corpusData != null) {
+          iterationSeed = corpusData.seed;
         }
-        catch (Throwable e) {
-          //noinspection InstanceofCatchParameter
-          if (e instanceof CannotRestoreValue && session.parameters.serializedData != null) {
+
+        ScheduledFuture<?> printSeeds = session.executor.schedule(
+                () -> System.out.println("An iteration is running for too long, " + printSeeds()),
+                1, TimeUnit.MINUTES);
+        try {
+          node = new StructureNode(new NodeId(session.generator));
+          T value;
+          GenerativeDataStructure data;
+          try {
+            IntSource source = createIntSource(i == 0);
+            data = new GenerativeDataStructure(source, node, sizeHint, session.parameters.maxGenerationDepth, session.profiler, session.statistics);
+            value = generateProfiled(data);
+            if (source instanceof DataSerializer.SerializedIntSource) {
+              ((DataSerializer.SerializedIntSource)source).checkShape(node);
+            }
+          }
+          catch (CannotSatisfyCondition e) {
+            session.statistics.conditionNotSatisfied();
+            session.notifier.generationDiscarded(StatusListener.DiscardReason.CONDITION_NOT_SATISFIED);
+            continue;
+          }
+          catch (DataSerializer.EOFException e) {
+            session.notifier.eofException();
+            failed = false;
+            return null;
+          }
+          catch (WrongDataStructure e) {
             throw e;
           }
-          throw new GeneratorException(this, e);
-        }
-        if (!session.addGeneratedNode(node)) continue;
+          catch (Throwable e) {
+            //noinspection InstanceofCatchParameter
+            if (e instanceof CannotRestoreValue && session.parameters.serializedData != null) {
+              throw e;
+            }
+            throw new GeneratorException(this, e);
+          }
+          session.statistics.valueGenerated();
+          if (!data.hasLazyCollections() && !session.addGeneratedNode(node)) {
+            session.statistics.duplicateGenerated();
+            session.notifier.generationDiscarded(StatusListener.DiscardReason.DUPLICATE);
+            continue;
+          }
+          session.classification.valueChecked(data.getLabels());
 
-        return CounterExampleImpl.checkProperty(this, value, node);
-      } finally {
-        printSeeds.cancel(false);
+          CounterExampleImpl<T> example = CounterExampleImpl.checkProperty(this, value, node);
+          failed = example != null;
+          return example;
+        } finally {
+          printSeeds.cancel(false);
+        }
       }
+      throw new GeneratorException(this, new CannotSatisfyCondition(DATA_IS_DIFFERENT));
     }
-    throw new GeneratorException(this, new CannotSatisfyCondition(DATA_IS_DIFFERENT));
+    finally {
+      FlightRecorderEvents.commitIteration(event, this, node, failed);
+    }
+  }
+
+  private IntSource createIntSource(boolean firstAttempt) {
+    if (session.parameters.serializedData != null) return session.parameters.serializedData;
+
+    if (firstAttempt && corpusData != null) {
+      return Corpus.createSource(corpusData, createRandomSource(new Random(iterationSeed)));
+    }
+    return createRandomSource(random);
+  }
+
+  private static IntSource createRandomSource(Random random) {
+    return new IntSource() {
+      @Override
+      public int drawInt(IntDistribution distribution) {
+        return distribution.generateInt(random);
+      }
+
+      @Override
+      public long drawLong(LongDistribution distribution) {
+        return distribution.generateLong(random);
+      }
+
+      @Override
+      public void drawBytes(byte[] target) {
+        random.nextBytes(target);
+      }
+    };
   }
 
   String printToReproduce(@Nullable Throwable failureReason, CounterExampleImpl<?> minimalCounterExample) {
@@ -113,23 +190,85 @@ class Iteration<T> {
 
   @Nullable
   Iteration<T> performIteration() {
-    session.notifier.iterationStarted(iterationNumber);
+    long start = System.nanoTime();
+    session.notifier.iterationStarted(iterationNumber, start);
 
-    CounterExampleImpl<T> example = findCounterExample();
+    CounterExampleImpl<T> example;
+    try {
+      example = findCounterExample();
+    }
+    finally {
+      if (corpusData != null) {
+        corpusData.close();
+      }
+      session.notifier.iterationFinished(System.nanoTime() - start);
+    }
     if (example != null) {
       session.notifier.counterExampleFound(this);
-      throw new PropertyFalsified(new PropertyFailureImpl<>(example, this));
+      throw new PropertyFalsified(new PropertyFailureImpl<>(example, this, 0, 0));
     }
+    return nextIteration();
+  }
 
-    if (iterationNumber >= session.parameters.getIterationCount()) {
+  @Nullable
+  private Iteration<T> nextIteration() {
+    if (iterationNumber >= session.parameters.getIterationCount() && !session.needsMoreCoverage(iterationNumber)) {
       return null;
     }
     
     return new Iteration<>(session, random.nextLong(), iterationNumber + 1);
   }
 
-  T generateValue(ReplayDataStructure data) {
-    return session.generator.getGeneratorFunction().apply(data);
+  /**
+   * Continues shrinking the counterexample saved in a checkpoint. If it doesn't fail anymore, the check goes on as if this iteration has passed.
+   * If the generator can't restore it anymore (e.g. because it has been changed), the failed iteration is performed again from its seed.
+   * @return the next iteration to perform
+   */
+  @Nullable
+  static <T> Iteration<T> resumeShrinking(CheckSession<T> session, Checkpoint checkpoint, Checkpoint.ShrinkState state) {
+    Iteration<T> iteration = new Iteration<>(session, checkpoint.iterationSeed, checkpoint.iterationNumber, state.sizeHint, null);
+    StructureNode node = new StructureNode(new NodeId(session.generator));
+    T value;
+    try (DataSerializer.SerializedIntSource source = state.createSource()) {
+      value = iteration.generateValue(new GenerativeDataStructure(source, node, iteration.sizeHint,
+                                                                  session.parameters.maxGenerationDepth, null, null));
+      source.checkShape(node);
+    }
+    catch (CannotRestoreValue | DataSerializer.EOFException e) {
+      return iteration;
+    }
+    catch (WrongDataStructure e) {
+      throw e;
+    }
+    catch (Throwable e) {
+      throw new GeneratorException(iteration, e);
+    }
+    CounterExampleImpl<T> example = CounterExampleImpl.checkProperty(iteration, value, node);
+    if (example != null) {
+      session.notifier.counterExampleFound(iteration);
+      throw new PropertyFalsified(new PropertyFailureImpl<>(example, iteration, state.totalSteps, state.successfulSteps));
+    }
+    return iteration.nextIteration();
+  }
+
+  T generateValue(AbstractDataStructure data) {
+    T value = session.generator.getGeneratorFunction().apply(data);
+    data.finishGeneration();
+    return value;
+  }
+
+  private T generateProfiled(GenerativeDataStructure data) {
+    GeneratorProfiler profiler = session.profiler;
+    if (profiler == null) {
+      return generateValue(data);
+    }
+    profiler.enter(session.generator);
+    try {
+      return generateValue(data);
+    }
+    finally {
+      profiler.exit();
+    }
   }
 }
 
@@ -141,32 +280,177 @@ class CheckSession<T> {
   final Predicate<T> property;
   final PropertyChecker.Parameters parameters;
   final StatusNotifier notifier;
-  private final Set<StructureNode> generatedNodes = Collections.newSetFromMap(new LinkedHashMap<StructureNode, Boolean>() {
+  @Nullable final GeneratorProfiler profiler;
+  final GenerationStatistics statistics;
+  final ValueClassification classification;
+  @Nullable private final Checkpoint resumedFrom;
+  private long lastCheckpointTime = System.nanoTime();
+  /**
+   * The recently generated structures by their fingerprints, to skip duplicates. A fingerprint match is confirmed by comparing the structures,
+   * except for the fingerprints restored from a checkpoint (mapped to null), where a 64-bit collision would discard a distinct value.
+   */
+  private final Map<Long, StructureNode> generatedNodes = new LinkedHashMap<Long, StructureNode>() {
     @Override
-    protected boolean removeEldestEntry(Map.Entry<StructureNode, Boolean> eldest) {
+    protected boolean removeEldestEntry(Map.Entry<Long, StructureNode> eldest) {
       return size() > 1_000;
     }
-  });
+  };
 
-  CheckSession(Generator<T> generator, Predicate<T> property, PropertyChecker.Parameters parameters) {
+  CheckSession(Generator<T> generator, Predicate<T> property, PropertyChecker.Parameters parameters, @Nullable Checkpoint resumedFrom) {
     this.generator = generator;
     this.property = property;
     this.parameters = parameters;
+    this.resumedFrom = resumedFrom;
     notifier = new StatusNotifier(parameters);
+    profiler = parameters.profiledGeneratorCount > 0 ? new GeneratorProfiler(parameters.profiledGeneratorCount) : null;
+    statistics = resumedFrom != null ? resumedFrom.statistics : new GenerationStatistics();
+    classification = resumedFrom != null ? resumedFrom.classification : new ValueClassification();
+    if (resumedFrom != null) {
+      for (long fingerprint : resumedFrom.fingerprints) {
+        generatedNodes.put(fingerprint, null);
+      }
+    }
+  }
+
+  /**
+   * @return the index of the corpus entry to replay in the given iteration, or -1 if it should use random data.
+   * The newest entries are replayed first, so that the recently found counterexamples are checked even when the corpus is larger than the iteration count.
+   */
+  private int getCorpusEntry(int iterationNumber) {
+    Corpus corpus = parameters.corpus;
+    return corpus != null && parameters.serializedData == null && iterationNumber <= corpus.size() ? corpus.size() - iterationNumber : -1;
+  }
+
+  /** @return the corpus entry to replay in the given iteration with its header read, or null if the iteration should use random data */
+  @Nullable
+  DataSerializer.SerializedIntSource readCorpusEntry(int iterationNumber) {
+    int corpusEntry = getCorpusEntry(iterationNumber);
+    return corpusEntry >= 0 ? parameters.corpus.readHeader(corpusEntry) : null;
   }
 
   boolean addGeneratedNode(StructureNode node) {
-    return generatedNodes.add(node);
+    long fingerprint = node.fingerprint();
+    if (!generatedNodes.containsKey(fingerprint)) {
+      generatedNodes.put(fingerprint, node);
+      return true;
+    }
+    StructureNode generated = generatedNodes.get(fingerprint);
+    return generated != null && !generated.equals(node);
+  }
+
+  long[] getGeneratedFingerprints() {
+    return generatedNodes.keySet().stream().mapToLong(Long::longValue).toArray();
   }
 
   void run() {
     try {
-      Iteration<T> iteration = new Iteration<>(this, parameters.globalSeed, 1);
+      Iteration<T> iteration = createFirstIteration();
+      int iterationNumber = 0;
       while (iteration != null) {
+        iterationNumber = iteration.iterationNumber;
         iteration = iteration.performIteration();
+        if (iteration != null) {
+          saveCheckpoint(iteration, null, false);
+        }
+      }
+      deleteCheckpoint();
+      checkRejectionRate();
+      checkCoverage(iterationNumber);
+    }
+    catch (PropertyFalsified e) {
+      deleteCheckpoint();
+      if (parameters.printStatistics) {
+        System.out.print(((PropertyFailureImpl<?>)e.getFailure()).getShrinkPassReport());
+      }
+      if (parameters.corpus != null && parameters.serializedData == null) {
+        parameters.corpus.add(e.getFailure().getMinimalCounterexample());
       }
-    } finally {
+      throw e;
+    }
+    finally {
       shutdownExecutor();
+      if (profiler != null) {
+        profiler.printReport();
+      }
+      if (parameters.printStatistics) {
+        statistics.printReport();
+      }
+      if (!parameters.silent && classification.hasLabels()) {
+        classification.printReport();
+      }
+    }
+  }
+
+  @Nullable
+  private Iteration<T> createFirstIteration() {
+    if (resumedFrom == null) {
+      return new Iteration<>(this, parameters.globalSeed, 1);
+    }
+    if (resumedFrom.shrinking != null) {
+      return Iteration.resumeShrinking(this, resumedFrom, resumedFrom.shrinking);
+    }
+    return new Iteration<>(this, resumedFrom.iterationSeed, resumedFrom.iterationNumber);
+  }
+
+  /**
+   * Saves the session state if {@link PropertyChecker.Parameters#withCheckpoints checkpoints} are enabled, and enough time has passed since
+   * the last checkpoint, or {@code force} is true.
+   * @param iteration the next iteration to perform, or the failed one if {@code failure} is not null
+   * @param failure the counterexample being shrunk, if any
+   */
+  void saveCheckpoint(Iteration<T> iteration, @Nullable PropertyFailureImpl<T> failure, boolean force) {
+    Path file = parameters.checkpointFile;
+    if (file == null || parameters.serializedData != null) return;
+
+    long now = System.nanoTime();
+    if (!force && now - lastCheckpointTime < parameters.checkpointIntervalNanos) return;
+
+    try {
+      Checkpoint.save(file, this, iteration, failure);
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException("Cannot save checkpoint to " + file, e);
+    }
+    lastCheckpointTime = now;
+  }
+
+  /** The check is over, so there's nothing to resume anymore */
+  private void deleteCheckpoint() {
+    Path file = parameters.checkpointFile;
+    if (file == null || parameters.serializedData != null) return;
+    try {
+      Files.deleteIfExists(file);
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException("Cannot delete checkpoint " + file, e);
+    }
+  }
+
+  /**
+   * @return whether the check should go on after the requested number of iterations, because some coverage requirement
+   * isn't met yet, and the iteration limit for meeting them isn't reached
+   */
+  boolean needsMoreCoverage(int iterationNumber) {
+    return !parameters.coverageRequirements.isEmpty() &&
+           parameters.serializedData == null &&
+           iterationNumber < (long)parameters.getIterationCount() * PropertyChecker.COVERAGE_ITERATION_FACTOR &&
+           classification.findUnsatisfiedRequirement(parameters.coverageRequirements) != null;
+  }
+
+  private void checkCoverage(int iterationCount) {
+    if (parameters.serializedData != null) return;
+    String problem = classification.findUnsatisfiedRequirement(parameters.coverageRequirements);
+    if (problem != null) {
+      throw new InsufficientCoverage(problem, iterationCount, classification.getReport());
+    }
+  }
+
+  private void checkRejectionRate() {
+    if (parameters.maxRejectionRate < 1) {
+      String problem = statistics.findExcessiveRejection(parameters.maxRejectionRate);
+      if (problem != null) {
+        throw new RejectionRateExceeded(problem, parameters.maxRejectionRate, statistics.getReport());
+      }
     }
   }
 
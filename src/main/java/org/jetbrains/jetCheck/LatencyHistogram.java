@@ -0,0 +1,81 @@
+package org.jetbrains.jetCheck;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram of durations, used by {@link CheckMetrics}. Values are counted in buckets whose bounds are
+ * powers of two nanoseconds, so recording is cheap, and percentiles are precise up to a factor of two.
+ */
+public final class LatencyHistogram {
+  private final AtomicLongArray buckets = new AtomicLongArray(64);
+  private final LongAdder count = new LongAdder();
+  private final LongAdder total = new LongAdder();
+  private final AtomicLong max = new AtomicLong();
+
+  void record(long nanos) {
+    if (nanos < 0) nanos = 0;
+    buckets.incrementAndGet(64 - Long.numberOfLeadingZeros(nanos) - (nanos == 0 ? 0 : 1));
+    count.increment();
+    total.add(nanos);
+    max.accumulateAndGet(nanos, Math::max);
+  }
+
+  /** @return the number of recorded durations */
+  public long getCount() {
+    return count.sum();
+  }
+
+  /** @return the sum of all recorded durations, in nanoseconds */
+  public long getTotalNanos() {
+    return total.sum();
+  }
+
+  /** @return the longest recorded duration, in nanoseconds */
+  public long getMaxNanos() {
+    return max.get();
+  }
+
+  /** @return the average recorded duration in nanoseconds, or 0 if nothing was recorded */
+  public long getMeanNanos() {
+    long count = getCount();
+    return count == 0 ? 0 : getTotalNanos() / count;
+  }
+
+  /**
+   * @param quantile a number between 0 and 1, e.g. 0.99 for the 99th percentile
+   * @return an upper bound (at most twice as large as the real value) of the duration in nanoseconds,
+   * which the given fraction of recorded durations doesn't exceed; 0 if nothing was recorded
+   */
+  public long getPercentileNanos(double quantile) {
+    if (quantile < 0 || quantile > 1) throw new IllegalArgumentException("Quantile should be between 0 and 1: " + quantile);
+    long count = getCount();
+    if (count == 0) return 0;
+
+    long threshold = Math.max(1, (long)Math.ceil(count * quantile));
+    long seen = 0;
+    for (int i = 0; i < buckets.length(); i++) {
+      seen += buckets.get(i);
+      if (seen >= threshold) {
+        return Math.min((1L << (i + 1)) - 1, getMaxNanos());
+      }
+    }
+    return getMaxNanos();
+  }
+
+  @Override
+  public String toString() {
+    return "count=" + getCount() +
+           ", mean=" + formatMillis(getMeanNanos()) +
+           ", p50=" + formatMillis(getPercentileNanos(0.5)) +
+           ", p99=" + formatMillis(getPercentileNanos(0.99)) +
+           ", max=" + formatMillis(getMaxNanos());
+  }
+
+  private static String formatMillis(long nanos) {
+    return String.format(Locale.ROOT, "%.3fms", (double)nanos / TimeUnit.MILLISECONDS.toNanos(1));
+  }
+}
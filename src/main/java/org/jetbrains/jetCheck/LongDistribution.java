@@ -0,0 +1,47 @@
+package org.jetbrains.jetCheck;
+
+import java.util.Random;
+
+/**
+ * Used for generating random long values with custom distribution, and ensuring that shrunk long values don't violate that distribution.
+ * Longs are drawn and recorded as single values, so they shrink as a whole, unlike longs assembled from several ints.
+ */
+public interface LongDistribution {
+  /** Returns a long value distributed in the needed fashion using the given Random */
+  long generateLong(Random random);
+
+  /** @return true if the given value is valid for this distribution */
+  boolean isValidValue(long l);
+
+  long getMin();
+
+  long getMax();
+
+  /**
+   * This distribution returns a long uniformly distributed between {@code min} and {@code max} (both ends inclusive).
+   */
+  static LongDistribution uniform(long min, long max) {
+    return new BoundedLongDistribution(min, max, r -> {
+      if (min == max) return min;
+
+      long range = max - min + 1;
+      if (range > 0) {
+        // the same rejection sampling as Random.nextInt(bound) does, to avoid bias
+        while (true) {
+          long bits = r.nextLong() >>> 1;
+          long value = bits % range;
+          if (bits - value + (range - 1) >= 0) {
+            return value + min;
+          }
+        }
+      }
+
+      while (true) {
+        long l = r.nextLong();
+        if (l >= min && l <= max) {
+          return l;
+        }
+      }
+    });
+  }
+}
@@ -0,0 +1,34 @@
+package org.jetbrains.jetCheck;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.function.LongFunction;
+import java.util.function.LongUnaryOperator;
+import java.util.function.ToLongFunction;
+
+/**
+ * A generator of longs (e.g. {@link Generator#longs}), which can be run via {@link GenerationEnvironment#generateLong}
+ * without boxing the results. It records the same data as when run via {@link GenerationEnvironment#generate}.
+ */
+public final class LongGenerator extends Generator<Long> {
+  private final ToLongFunction<GenerationEnvironment> myLongFunction;
+
+  LongGenerator(@NotNull ToLongFunction<GenerationEnvironment> function) {
+    super(function::applyAsLong);
+    myLongFunction = function;
+  }
+
+  long generateLong(@NotNull GenerationEnvironment data) {
+    return myLongFunction.applyAsLong(data);
+  }
+
+  /** Like {@link #map}, but without boxing */
+  public LongGenerator mapToLong(@NotNull LongUnaryOperator fun) {
+    return new LongGenerator(data -> fun.applyAsLong(myLongFunction.applyAsLong(data)));
+  }
+
+  /** Like {@link #map}, but without boxing the generated longs */
+  public <V> Generator<V> mapToObj(@NotNull LongFunction<? extends V> fun) {
+    return from(data -> fun.apply(myLongFunction.applyAsLong(data)));
+  }
+}
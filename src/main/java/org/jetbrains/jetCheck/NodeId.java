@@ -20,12 +20,16 @@ class NodeId {
 
   /** A root id not tied to any generator, for a data structure built outside {@link PropertyChecker}. */
   NodeId() {
-    this(new AtomicInteger(), null);
+    this(new AtomicInteger(), (Integer)null);
   }
 
   private NodeId(AtomicInteger counter, @Nullable Generator<?> generator) {
+    this(counter, generator == null ? null : generator.getGeneratorFunction().hashCode());
+  }
+
+  private NodeId(AtomicInteger counter, @Nullable Integer generatorHash) {
     this.counter = counter;
-    this.generatorHash = generator == null ? null : generator.getGeneratorFunction().hashCode();
+    this.generatorHash = generatorHash;
     number = counter.getAndIncrement();
   }
 
@@ -33,6 +37,11 @@ class NodeId {
     return new NodeId(counter, generator);
   }
 
+  /** @return an id with the same generator and the next number from the given counter */
+  NodeId renumbered(AtomicInteger counter) {
+    return new NodeId(counter, generatorHash);
+  }
+
   @Override
   public String toString() {
     return String.valueOf(number);
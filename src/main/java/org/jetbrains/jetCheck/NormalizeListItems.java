@@ -0,0 +1,175 @@
+package org.jetbrains.jetCheck;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.LongStream;
+
+/**
+ * Makes list items more canonical: first tries to sort them by their own size, then to replace the items with copies
+ * of the smallest sibling, from the end of the list, making at most {@link #MAX_SUBSTITUTIONS} such attempts per list.
+ * The lists are processed in the reverse document order.<p></p>
+ *
+ * Since the ids of the reordered items are no longer ascending, the changed list is {@link StructureElement#renumber renumbered}
+ * within the id range it had before, so that the rest of the structure keeps its ids; the lists are identified by their index among all lists in the document order, which the changes in later lists don't affect.
+ */
+class NormalizeListItems extends ShrinkStep {
+  private static final int MAX_SUBSTITUTIONS = 4;
+  private static final Comparator<StructureElement> BY_SIZE = Comparator
+    .comparing((StructureElement e) -> toNumbers(e), Comparator.<long[]>comparingInt(numbers -> numbers.length).thenComparing(NormalizeListItems::compareNumbers));
+  private final List<StructureNode> lists;
+  private final int listIndex;
+  /** -1 for sorting, otherwise the index of the item to replace */
+  private final int itemIndex;
+  private final int substitutions;
+
+  private NormalizeListItems(List<StructureNode> lists, int listIndex, int itemIndex, int substitutions) {
+    this.lists = lists;
+    this.listIndex = listIndex;
+    this.itemIndex = itemIndex;
+    this.substitutions = substitutions;
+  }
+
+  @Nullable
+  static ShrinkStep fromEnd(StructureNode root) {
+    List<StructureNode> lists = collectLists(root);
+    return sortList(lists, lists.size() - 1);
+  }
+
+  private static List<StructureNode> collectLists(StructureNode root) {
+    List<StructureNode> result = new ArrayList<>();
+    collectLists(root, result);
+    return result;
+  }
+
+  private static void collectLists(StructureNode node, List<StructureNode> result) {
+    if (node.shrinkProhibited) return;
+    if (node.kind == StructureKind.LIST && node.children.size() > 2) {
+      result.add(node);
+    }
+    for (StructureElement child : node.children) {
+      if (child instanceof StructureNode) {
+        collectLists((StructureNode)child, result);
+      }
+    }
+  }
+
+  @Nullable
+  private static ShrinkStep sortList(List<StructureNode> lists, int listIndex) {
+    for (; listIndex >= 0; listIndex--) {
+      List<StructureElement> items = getItems(lists.get(listIndex));
+      List<StructureElement> sorted = new ArrayList<>(items);
+      sorted.sort(BY_SIZE);
+      if (!sorted.equals(items)) {
+        return new NormalizeListItems(lists, listIndex, -1, 0);
+      }
+      ShrinkStep substitution = substituteItem(lists, listIndex, items.size(), 0);
+      if (substitution != null) return substitution;
+    }
+    return null;
+  }
+
+  /** @return a step replacing the last item before {@code itemIndex} which is bigger than the smallest one, or proceeds to the previous list */
+  @Nullable
+  private static ShrinkStep substituteItem(List<StructureNode> lists, int listIndex, int itemIndex, int substitutions) {
+    if (substitutions < MAX_SUBSTITUTIONS) {
+      List<StructureElement> items = getItems(lists.get(listIndex));
+      StructureElement smallest = items.stream().min(BY_SIZE).orElseThrow(IllegalStateException::new);
+      for (int i = itemIndex - 1; i >= 0; i--) {
+        if (BY_SIZE.compare(items.get(i), smallest) > 0) {
+          return new NormalizeListItems(lists, listIndex, i, substitutions);
+        }
+      }
+    }
+    return sortList(lists, listIndex - 1);
+  }
+
+  private static List<StructureElement> getItems(StructureNode list) {
+    return list.children.subList(1, list.children.size());
+  }
+
+  private static long[] toNumbers(StructureElement element) {
+    LongStream.Builder builder = LongStream.builder();
+    element.serialize(builder);
+    return builder.build().toArray();
+  }
+
+  /** Compares numbers of the same count lexicographically, preferring the values closer to zero, as the other shrinking steps do */
+  private static int compareNumbers(long[] numbers1, long[] numbers2) {
+    for (int i = 0; i < numbers1.length; i++) {
+      if (numbers1[i] != numbers2[i]) {
+        // unsigned, so that the absolute value of Long.MIN_VALUE is the largest one
+        long abs1 = Math.abs(numbers1[i]);
+        long abs2 = Math.abs(numbers2[i]);
+        return abs1 != abs2 ? Long.compareUnsigned(abs1, abs2) : Long.compare(numbers2[i], numbers1[i]);
+      }
+    }
+    return 0;
+  }
+
+  @Override
+  List<?> getEqualityObjects() {
+    return Arrays.asList(lists.get(listIndex).id, itemIndex);
+  }
+
+  @Override
+  StructureNode apply(StructureNode root) {
+    StructureNode list = lists.get(listIndex);
+    List<StructureElement> items = new ArrayList<>(getItems(list));
+    if (itemIndex < 0) {
+      items.sort(BY_SIZE);
+    } else {
+      items.set(itemIndex, items.stream().min(BY_SIZE).orElseThrow(IllegalStateException::new));
+    }
+    List<StructureElement> children = new ArrayList<>(list.children.size());
+    children.add(list.children.get(0));
+    children.addAll(items);
+    StructureNode changed = list.copyWithChildren(children);
+
+    AtomicInteger counter = new AtomicInteger(list.id.number);
+    StructureNode renumbered = changed.renumber(counter);
+    if (counter.get() - 1 > lastNumber(list)) {
+      // the substituted copy has more nodes than the item it replaces, so the list doesn't fit into its id range anymore
+      return root.replace(list.id, changed).renumber(new AtomicInteger());
+    }
+    return root.replace(list.id, renumbered);
+  }
+
+  /** @return the number of the last id in the given structure, which is the greatest one there */
+  private static int lastNumber(StructureElement element) {
+    while (element instanceof StructureNode && !((StructureNode)element).children.isEmpty()) {
+      List<StructureElement> children = ((StructureNode)element).children;
+      element = children.get(children.size() - 1);
+    }
+    return element.id.number;
+  }
+
+  @Nullable
+  @Override
+  ShrinkStep onSuccess(@NotNull StructureNode smallerRoot) {
+    List<StructureNode> newLists = collectLists(smallerRoot);
+    if (listIndex >= newLists.size()) return null;
+    int itemCount = newLists.get(listIndex).children.size() - 1;
+    return substituteItem(newLists, listIndex, itemIndex < 0 ? itemCount : Math.min(itemIndex, itemCount), substitutions + (itemIndex < 0 ? 0 : 1));
+  }
+
+  @Nullable
+  @Override
+  ShrinkStep onFailure() {
+    int itemCount = lists.get(listIndex).children.size() - 1;
+    return substituteItem(lists, listIndex, itemIndex < 0 ? itemCount : itemIndex, substitutions + (itemIndex < 0 ? 0 : 1));
+  }
+
+  @Override
+  public String toString() {
+    return "NormalizeListItems{" +
+           (itemIndex < 0 ? "sort" : "replace " + itemIndex) +
+           ", list=" + lists.get(listIndex) +
+           '}';
+  }
+}
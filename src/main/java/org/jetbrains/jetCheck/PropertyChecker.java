@@ -3,8 +3,17 @@ package org.jetbrains.jetCheck;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.Random;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.function.DoublePredicate;
+import java.util.function.IntPredicate;
 import java.util.function.IntUnaryOperator;
+import java.util.function.LongPredicate;
 import java.util.function.Predicate;
 import java.util.function.Supplier;
 
@@ -23,6 +32,12 @@ public class PropertyChecker {
    */
   static final int DEFAULT_MAX_GENERATION_DEPTH = 1000;
 
+  /**
+   * If {@link Parameters#withCoverage coverage requirements} aren't met after the requested number of iterations,
+   * the check continues until they're met, but for at most this number of times more iterations in total.
+   */
+  static final int COVERAGE_ITERATION_FACTOR = 10;
+
   /**
    * Checks that the given property returns {@code true} and doesn't throw exceptions by running the generator and the property
    * on random data repeatedly for some number of times. To customize the settings, invoke {@link #customized()} first.
@@ -31,6 +46,21 @@ public class PropertyChecker {
     customized().forAll(generator, property);
   }
 
+  /** Like {@link #forAll}, for a property of ints */
+  public static void forAllInts(IntGenerator generator, @NotNull IntPredicate property) {
+    customized().forAllInts(generator, property);
+  }
+
+  /** Like {@link #forAll}, for a property of longs */
+  public static void forAllLongs(LongGenerator generator, @NotNull LongPredicate property) {
+    customized().forAllLongs(generator, property);
+  }
+
+  /** Like {@link #forAll}, for a property of doubles */
+  public static void forAllDoubles(DoubleGenerator generator, @NotNull DoublePredicate property) {
+    customized().forAllDoubles(generator, property);
+  }
+
   /**
    * Performs a check that the scenarios generated by the given command are successful. Default {@link PropertyChecker} settings are used. To customize the settings, invoke {@link #customized()} first.
    * @param command a supplier for a top-level command. This supplier should not have any side effects. 
@@ -43,7 +73,9 @@ public class PropertyChecker {
    * @return a "parameters" object that where some checker settings can be changed 
    */
   public static Parameters customized() {
-    return new Parameters(new Random().nextLong(), null, iteration -> (iteration - 1) % DEFAULT_MAX_SIZE_HINT + 1, null, false, false, false, DEFAULT_MAX_GENERATION_DEPTH);
+    return new Parameters(new Random().nextLong(), null, iteration -> (iteration - 1) % DEFAULT_MAX_SIZE_HINT + 1, null, false, false,
+                          false, DEFAULT_MAX_GENERATION_DEPTH, Collections.emptyList(), 0, false, 1, Collections.emptyMap(), null, null, 0,
+                          null, ShrinkPass.DEFAULT_ORDER, 1);
   }
 
   @SuppressWarnings("UseOfSystemOutOrSystemErr")
@@ -56,8 +88,23 @@ public class PropertyChecker {
     final boolean printValues;
     final boolean printData;
     final int maxGenerationDepth;
+    final List<StatusListener> listeners;
+    final int profiledGeneratorCount;
+    final boolean printStatistics;
+    final double maxRejectionRate;
+    final Map<String, Double> coverageRequirements;
+    @Nullable final Corpus corpus;
+    @Nullable final Path checkpointFile;
+    final long checkpointIntervalNanos;
+    @Nullable final Path resumeFile;
+    final List<ShrinkPass> shrinkPasses;
+    final int shrinkingThreads;
 
-    Parameters(long globalSeed, @Nullable IntSource serializedData, IntUnaryOperator sizeHintFun, @Nullable Integer iterationCount, boolean silent, boolean printValues, boolean printData, int maxGenerationDepth) {
+    Parameters(long globalSeed, @Nullable IntSource serializedData, IntUnaryOperator sizeHintFun, @Nullable Integer iterationCount,
+               boolean silent, boolean printValues, boolean printData, int maxGenerationDepth, List<StatusListener> listeners,
+               int profiledGeneratorCount, boolean printStatistics, double maxRejectionRate, Map<String, Double> coverageRequirements,
+               @Nullable Corpus corpus, @Nullable Path checkpointFile, long checkpointIntervalNanos, @Nullable Path resumeFile,
+               List<ShrinkPass> shrinkPasses, int shrinkingThreads) {
       this.globalSeed = globalSeed;
       this.serializedData = serializedData;
       this.sizeHintFun = sizeHintFun;
@@ -66,6 +113,24 @@ public class PropertyChecker {
       this.printValues = printValues;
       this.printData = printData;
       this.maxGenerationDepth = maxGenerationDepth;
+      this.listeners = listeners;
+      this.profiledGeneratorCount = profiledGeneratorCount;
+      this.printStatistics = printStatistics;
+      this.maxRejectionRate = maxRejectionRate;
+      this.coverageRequirements = coverageRequirements;
+      this.corpus = corpus;
+      this.checkpointFile = checkpointFile;
+      this.checkpointIntervalNanos = checkpointIntervalNanos;
+      this.resumeFile = resumeFile;
+      this.shrinkPasses = shrinkPasses;
+      this.shrinkingThreads = shrinkingThreads;
+    }
+
+    /** @return a copy of these parameters which replays the given serialized data in a single iteration */
+    Parameters withSerializedData(long globalSeed, @NotNull IntSource serializedData, int sizeHint) {
+      return new Parameters(globalSeed, serializedData, __ -> sizeHint, 1, silent, printValues, printData, maxGenerationDepth, listeners,
+                            profiledGeneratorCount, printStatistics, maxRejectionRate, coverageRequirements, corpus, checkpointFile,
+                            checkpointIntervalNanos, resumeFile, shrinkPasses, shrinkingThreads);
     }
 
     /**
@@ -84,7 +149,9 @@ public class PropertyChecker {
         return this;
       }
 
-      return new Parameters(seed, serializedData, sizeHintFun, iterationCount, silent, printValues, printData, maxGenerationDepth);
+      return new Parameters(seed, serializedData, sizeHintFun, iterationCount, silent, printValues, printData, maxGenerationDepth,
+                            listeners, profiledGeneratorCount, printStatistics, maxRejectionRate, coverageRequirements, corpus,
+                            checkpointFile, checkpointIntervalNanos, resumeFile, shrinkPasses, shrinkingThreads);
     }
 
     /**
@@ -109,7 +176,9 @@ public class PropertyChecker {
 
     @NotNull
     private Parameters withForcedIterationCount(int iterationCount) {
-      return new Parameters(globalSeed, serializedData, sizeHintFun, iterationCount, silent, printValues, printData, maxGenerationDepth);
+      return new Parameters(globalSeed, serializedData, sizeHintFun, iterationCount, silent, printValues, printData, maxGenerationDepth,
+                            listeners, profiledGeneratorCount, printStatistics, maxRejectionRate, coverageRequirements, corpus,
+                            checkpointFile, checkpointIntervalNanos, resumeFile, shrinkPasses, shrinkingThreads);
     }
 
     /**
@@ -125,7 +194,9 @@ public class PropertyChecker {
         return this;
       }
 
-      return new Parameters(globalSeed, serializedData, sizeHintFun, iterationCount, silent, printValues, printData, maxGenerationDepth);
+      return new Parameters(globalSeed, serializedData, sizeHintFun, iterationCount, silent, printValues, printData, maxGenerationDepth,
+                            listeners, profiledGeneratorCount, printStatistics, maxRejectionRate, coverageRequirements, corpus,
+                            checkpointFile, checkpointIntervalNanos, resumeFile, shrinkPasses, shrinkingThreads);
     }
 
     /**
@@ -141,7 +212,9 @@ public class PropertyChecker {
      */
     public Parameters withMaxGenerationDepth(int maxGenerationDepth) {
       if (maxGenerationDepth <= 0) throw new IllegalArgumentException("maxGenerationDepth must be positive: " + maxGenerationDepth);
-      return new Parameters(globalSeed, serializedData, sizeHintFun, iterationCount, silent, printValues, printData, maxGenerationDepth);
+      return new Parameters(globalSeed, serializedData, sizeHintFun, iterationCount, silent, printValues, printData, maxGenerationDepth,
+                            listeners, profiledGeneratorCount, printStatistics, maxRejectionRate, coverageRequirements, corpus,
+                            checkpointFile, checkpointIntervalNanos, resumeFile, shrinkPasses, shrinkingThreads);
     }
 
     /**
@@ -150,8 +223,12 @@ public class PropertyChecker {
      */
     public Parameters silent() {
       if (printValues) throw new IllegalStateException("'silent' is incompatible with 'printGeneratedValues'");
+      if (profiledGeneratorCount > 0) throw new IllegalStateException("'silent' is incompatible with 'profileGenerators'");
       if (printData) throw new IllegalStateException("'silent' is incompatible with 'printRawData'");
-      return new Parameters(globalSeed, serializedData, sizeHintFun, iterationCount, true, printValues, printData, maxGenerationDepth);
+      if (printStatistics) throw new IllegalStateException("'silent' is incompatible with 'printGenerationStatistics'");
+      return new Parameters(globalSeed, serializedData, sizeHintFun, iterationCount, true, printValues, printData, maxGenerationDepth,
+                            listeners, profiledGeneratorCount, printStatistics, maxRejectionRate, coverageRequirements, corpus,
+                            checkpointFile, checkpointIntervalNanos, resumeFile, shrinkPasses, shrinkingThreads);
     }
 
     /**
@@ -162,7 +239,9 @@ public class PropertyChecker {
     @SuppressWarnings("unused")
     public Parameters printGeneratedValues() {
       if (silent) throw new IllegalStateException("'printGeneratedValues' is incompatible with 'silent'");
-      return new Parameters(globalSeed, serializedData, sizeHintFun, iterationCount, silent, true, printData, maxGenerationDepth);
+      return new Parameters(globalSeed, serializedData, sizeHintFun, iterationCount, silent, true, printData, maxGenerationDepth, listeners,
+                            profiledGeneratorCount, printStatistics, maxRejectionRate, coverageRequirements, corpus, checkpointFile,
+                            checkpointIntervalNanos, resumeFile, shrinkPasses, shrinkingThreads);
     }
 
     /**
@@ -172,7 +251,164 @@ public class PropertyChecker {
     @SuppressWarnings("unused")
     public Parameters printRawData() {
       if (silent) throw new IllegalStateException("'printRawData' is incompatible with 'silent'");
-      return new Parameters(globalSeed, serializedData, sizeHintFun, iterationCount, silent, printValues, true, maxGenerationDepth);
+      return new Parameters(globalSeed, serializedData, sizeHintFun, iterationCount, silent, printValues, true, maxGenerationDepth,
+                            listeners, profiledGeneratorCount, printStatistics, maxRejectionRate, coverageRequirements, corpus,
+                            checkpointFile, checkpointIntervalNanos, resumeFile, shrinkPasses, shrinkingThreads);
+    }
+
+    /**
+     * Measures the time spent and memory allocated by each generator while producing values, and after the check,
+     * prints the generators taking the most time. Useful to find out which generator is responsible for slow generation.
+     * Generators are identified by their {@link Generator#named names}. Unnamed ones are identified by their creation sites,
+     * if {@code jetCheck.profile.creationSites} system property is set to {@code true} when the generators are created,
+     * or by their function classes otherwise. Only generation of new values is measured, not re-running generators during shrinking.
+     * @param reportSize the maximal number of generators to print
+     * @return a modified copy of this Parameters object
+     */
+    public Parameters profileGenerators(int reportSize) {
+      if (silent) throw new IllegalStateException("'profileGenerators' is incompatible with 'silent'");
+      if (reportSize <= 0) throw new IllegalArgumentException("reportSize must be positive: " + reportSize);
+      return new Parameters(globalSeed, serializedData, sizeHintFun, iterationCount, silent, printValues, printData, maxGenerationDepth,
+                            listeners, reportSize, printStatistics, maxRejectionRate, coverageRequirements, corpus, checkpointFile,
+                            checkpointIntervalNanos, resumeFile, shrinkPasses, shrinkingThreads);
+    }
+
+    /**
+     * After the check, prints how many values were generated, how many of them were discarded as duplicates
+     * or because some {@link Generator#suchThat} condition couldn't be satisfied, and how often each {@code suchThat} condition
+     * rejected the values. Useful to find generators spending most of their time on retries.
+     * If the check fails, also prints the {@link PropertyFailure#getShrinkPassStatistics() statistics} of each shrink pass.
+     * @return a modified copy of this Parameters object
+     * @see #withMaxRejectionRate
+     */
+    public Parameters printGenerationStatistics() {
+      if (silent) throw new IllegalStateException("'printGenerationStatistics' is incompatible with 'silent'");
+      return new Parameters(globalSeed, serializedData, sizeHintFun, iterationCount, silent, printValues, printData, maxGenerationDepth,
+                            listeners, profiledGeneratorCount, true, maxRejectionRate, coverageRequirements, corpus, checkpointFile,
+                            checkpointIntervalNanos, resumeFile, shrinkPasses, shrinkingThreads);
+    }
+
+    /**
+     * Makes an otherwise successful check fail with {@link RejectionRateExceeded} if some {@link Generator#suchThat} condition
+     * rejected, or the checker discarded (as duplicates or due to unsatisfiable conditions), more than the given proportion
+     * of the generated values. Conditions checked too few times to judge their rejection rate are ignored.
+     * @param maxRate the allowed proportion of rejected values, from 0 to 1
+     * @return a modified copy of this Parameters object
+     * @see #printGenerationStatistics()
+     */
+    public Parameters withMaxRejectionRate(double maxRate) {
+      if (!(maxRate >= 0 && maxRate <= 1)) throw new IllegalArgumentException("maxRate must be between 0 and 1: " + maxRate);
+      return new Parameters(globalSeed, serializedData, sizeHintFun, iterationCount, silent, printValues, printData, maxGenerationDepth,
+                            listeners, profiledGeneratorCount, printStatistics, maxRate, coverageRequirements, corpus, checkpointFile,
+                            checkpointIntervalNanos, resumeFile, shrinkPasses, shrinkingThreads);
+    }
+
+    /**
+     * Requires at least the given percentage of the checked values to be {@link GenerationEnvironment#classify classified}
+     * with the given label. If that's not so after the requested number of iterations, the check goes on until the requirement is met,
+     * but for at most {@value PropertyChecker#COVERAGE_ITERATION_FACTOR} times more iterations in total;
+     * after that, an otherwise successful check fails with {@link InsufficientCoverage}.
+     * Several requirements can be added by calling this method repeatedly.
+     * @param label a label passed to {@link GenerationEnvironment#classify}, or produced by {@link GenerationEnvironment#collect}
+     * @param minPercentage the required percentage of values with this label, from 0 to 100
+     * @return a modified copy of this Parameters object
+     */
+    public Parameters withCoverage(@NotNull String label, double minPercentage) {
+      if (!(minPercentage >= 0 && minPercentage <= 100)) {
+        throw new IllegalArgumentException("minPercentage must be between 0 and 100: " + minPercentage);
+      }
+      Map<String, Double> requirements = new LinkedHashMap<>(coverageRequirements);
+      requirements.put(label, minPercentage);
+      return new Parameters(globalSeed, serializedData, sizeHintFun, iterationCount, silent, printValues, printData, maxGenerationDepth,
+                            listeners, profiledGeneratorCount, printStatistics, maxRejectionRate, Collections.unmodifiableMap(requirements),
+                            corpus, checkpointFile, checkpointIntervalNanos, resumeFile, shrinkPasses, shrinkingThreads);
+    }
+
+    /**
+     * Makes the first iterations replay the entries of the given corpus, newest first: the n-th iteration starts with the data of the n-th entry
+     * from the end, and when that data ends or doesn't suit the generators anymore, continues with random data. So only as many
+     * of the latest entries as the iteration count are checked. If the property fails, the minimal counterexample
+     * is added to the corpus, so that it's checked first in the next runs.
+     * @return a modified copy of this Parameters object
+     */
+    public Parameters withCorpus(@NotNull Corpus corpus) {
+      return new Parameters(globalSeed, serializedData, sizeHintFun, iterationCount, silent, printValues, printData, maxGenerationDepth,
+                            listeners, profiledGeneratorCount, printStatistics, maxRejectionRate, coverageRequirements, corpus,
+                            checkpointFile, checkpointIntervalNanos, resumeFile, shrinkPasses, shrinkingThreads);
+    }
+
+    /**
+     * Sets which kinds of changes are tried when shrinking a counterexample, and in which order. By default, {@link ShrinkPass#STRUCTURE},
+     * {@link ShrinkPass#DUPLICATES} and {@link ShrinkPass#BOUNDARIES} are used. Passes that rarely succeed for some property can be omitted to make shrinking faster, at the cost
+     * of possibly bigger counterexamples. Use {@link #printGenerationStatistics} or {@link PropertyFailure#getShrinkPassStatistics()}
+     * to see how much each pass costs and how often it succeeds.
+     * @return a modified copy of this Parameters object
+     */
+    public Parameters withShrinkPasses(@NotNull ShrinkPass... passes) {
+      if (passes.length == 0) throw new IllegalArgumentException("At least one shrink pass is needed");
+      if (EnumSet.copyOf(Arrays.asList(passes)).size() != passes.length) {
+        throw new IllegalArgumentException("Duplicate shrink passes: " + Arrays.toString(passes));
+      }
+      return new Parameters(globalSeed, serializedData, sizeHintFun, iterationCount, silent, printValues, printData, maxGenerationDepth,
+                            listeners, profiledGeneratorCount, printStatistics, maxRejectionRate, coverageRequirements, corpus,
+                            checkpointFile, checkpointIntervalNanos, resumeFile,
+                            Collections.unmodifiableList(new ArrayList<>(Arrays.asList(passes))), shrinkingThreads);
+    }
+
+    /**
+     * Makes shrinking replay the values on several threads when a step changes the distributions of some ints, and many combinations of
+     * their possible values have to be tried. The results are committed in the same order as in single-threaded shrinking,
+     * so the minimal counterexample and the reported statistics don't depend on the number of threads.
+     * The generator and the property should be thread-safe.
+     * @return a modified copy of this Parameters object
+     */
+    public Parameters withShrinkingThreads(int threads) {
+      if (threads < 1) throw new IllegalArgumentException("At least one thread is needed: " + threads);
+      return new Parameters(globalSeed, serializedData, sizeHintFun, iterationCount, silent, printValues, printData, maxGenerationDepth,
+                            listeners, profiledGeneratorCount, printStatistics, maxRejectionRate, coverageRequirements, corpus,
+                            checkpointFile, checkpointIntervalNanos, resumeFile, shrinkPasses, threads);
+    }
+
+    /**
+     * Makes the check periodically save its state to the given file, so that it can be {@link #resumeFrom resumed} if the process
+     * is interrupted. The state is saved between iterations and during shrinking, at most once per the given interval,
+     * and additionally when a counterexample is found. When the check is over (successfully or not), the file is deleted.
+     * @return a modified copy of this Parameters object
+     */
+    public Parameters withCheckpoints(@NotNull Path file, @NotNull Duration interval) {
+      if (interval.isNegative()) throw new IllegalArgumentException("Negative interval: " + interval);
+      return new Parameters(globalSeed, serializedData, sizeHintFun, iterationCount, silent, printValues, printData, maxGenerationDepth,
+                            listeners, profiledGeneratorCount, printStatistics, maxRejectionRate, coverageRequirements, corpus, file,
+                            interval.toNanos(), resumeFile, shrinkPasses, shrinkingThreads);
+    }
+
+    /**
+     * Continues the check from the state saved to the given file by {@link #withCheckpoints}, if the file exists.
+     * The check resumes from the iteration following the saved one, with the same seeds and statistics,
+     * or continues shrinking the smallest counterexample found so far. Otherwise, the check starts from the beginning,
+     * so the same code can be used for the first run and for the resumed ones:
+     * {@code withCheckpoints(file, interval).resumeFrom(file)}.<p></p>
+     * The generators and the property should be the same as in the interrupted check.
+     * @return a modified copy of this Parameters object
+     */
+    public Parameters resumeFrom(@NotNull Path file) {
+      return new Parameters(globalSeed, serializedData, sizeHintFun, iterationCount, silent, printValues, printData, maxGenerationDepth,
+                            listeners, profiledGeneratorCount, printStatistics, maxRejectionRate, coverageRequirements, corpus,
+                            checkpointFile, checkpointIntervalNanos, file, shrinkPasses, shrinkingThreads);
+    }
+
+    /**
+     * Registers a listener to be notified about the progress of the check, e.g. {@link CheckMetrics}.
+     * Several listeners can be registered by calling this method repeatedly; they're notified in the registration order.
+     * @return a modified copy of this Parameters object
+     */
+    public Parameters withStatusListener(@NotNull StatusListener listener) {
+      List<StatusListener> listeners = new ArrayList<>(this.listeners);
+      listeners.add(listener);
+      return new Parameters(globalSeed, serializedData, sizeHintFun, iterationCount, silent, printValues, printData, maxGenerationDepth,
+                            Collections.unmodifiableList(listeners), profiledGeneratorCount, printStatistics, maxRejectionRate,
+                            coverageRequirements, corpus, checkpointFile, checkpointIntervalNanos, resumeFile, shrinkPasses,
+                            shrinkingThreads);
     }
 
     /**
@@ -198,6 +434,19 @@ public class PropertyChecker {
       return DataSerializer.deserializeInto(serializedData, this);
     }
 
+    /**
+     * Checks the property within a single iteration by using specified underlying data. Useful to debug the test after it's failed.
+     * The stream is read lazily while the generators run, and isn't closed.
+     * @param serializedData the data used for running generators in binary form, as written by {@link PropertyFailure.CounterExample#writeSerializedData}.
+     * @deprecated To catch your attention. It's fine to call this method during test debugging, but it should not be committed to version control
+     * and used in regression tests, because any changes in the test itself or the framework can render the passed argument obsolete.
+     * For regression testing, it's recommended to code the failing scenario explicitly.
+     */
+    @Deprecated
+    public Parameters rechecking(@NotNull InputStream serializedData) {
+      return DataSerializer.deserializeInto(serializedData, this);
+    }
+
     /**
      * Checks that the given property returns {@code true} and doesn't throw exceptions by running the given generator and the property
      * on random data repeatedly for some number of times (see {@link #withIterationCount(int)}).
@@ -206,8 +455,45 @@ public class PropertyChecker {
       createSession(generator, property).run();
     }
 
+    /**
+     * Like {@link #forAll}, for a property of ints. The generator (e.g. {@link Generator#ints}) and the primitive generators it runs
+     * via {@link GenerationEnvironment#generateInt} don't box, only the resulting value is boxed once per check to be kept for shrinking.
+     */
+    public void forAllInts(IntGenerator generator, IntPredicate property) {
+      forAll(generator, (Integer i) -> property.test(i));
+    }
+
+    /** Like {@link #forAll}, for a property of longs */
+    public void forAllLongs(LongGenerator generator, LongPredicate property) {
+      forAll(generator, (Long l) -> property.test(l));
+    }
+
+    /** Like {@link #forAll}, for a property of doubles */
+    public void forAllDoubles(DoubleGenerator generator, DoublePredicate property) {
+      forAll(generator, (Double d) -> property.test(d));
+    }
+
     private <T> CheckSession<T> createSession(Generator<T> generator, Predicate<T> property) {
-      return new CheckSession<>(serializedData == null ? generator : generator.noShrink(), property, this);
+      Checkpoint checkpoint = serializedData == null ? loadCheckpoint() : null;
+      Parameters parameters = this;
+      if (checkpoint != null) {
+        parameters = new Parameters(checkpoint.globalSeed, serializedData, sizeHintFun, iterationCount, silent, printValues, printData,
+                              maxGenerationDepth, listeners, profiledGeneratorCount, printStatistics, maxRejectionRate,
+                              coverageRequirements, corpus, checkpointFile, checkpointIntervalNanos, resumeFile, shrinkPasses,
+                              shrinkingThreads);
+      }
+      return new CheckSession<>(serializedData == null ? generator : generator.noShrink(), property, parameters, checkpoint);
+    }
+
+    @Nullable
+    private Checkpoint loadCheckpoint() {
+      if (resumeFile == null || !Files.exists(resumeFile)) return null;
+      try {
+        return Checkpoint.load(resumeFile);
+      }
+      catch (IOException e) {
+        throw new UncheckedIOException("Cannot resume from " + resumeFile, e);
+      }
     }
 
     /**
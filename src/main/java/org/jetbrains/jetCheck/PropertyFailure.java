@@ -3,6 +3,11 @@ package org.jetbrains.jetCheck;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+
 /**
  * @author peter
  */
@@ -28,6 +33,24 @@ public interface PropertyFailure<T> {
   
   int getSizeHint();
 
+  /** @return the statistics of each {@link ShrinkPass} run while shrinking this failure, in the order the passes were configured */
+  @NotNull
+  List<ShrinkPassStatistics> getShrinkPassStatistics();
+
+  interface ShrinkPassStatistics {
+    @NotNull
+    ShrinkPass getPass();
+
+    /** @return the number of smaller examples this pass has tried */
+    int getAttemptCount();
+
+    /** @return the number of tried examples which still failed and replaced the current minimal counterexample */
+    int getAcceptedCount();
+
+    /** @return the total time spent in this pass, including generation and property checks */
+    long getTimeNanos();
+  }
+
   interface CounterExample<T> {
     /**
      * @return the value produced by the generator, on which the property check has failed
@@ -53,10 +76,16 @@ public interface PropertyFailure<T> {
 
     /**
      * @return the data used for generator to produce this counterexample, serialized into Base64.
-     * To be used with {@link PropertyChecker.Parameters#rechecking}.
+     * To be used with {@link PropertyChecker.Parameters#rechecking(String)}.
      */
     @NotNull
     String getSerializedData();
+
+    /**
+     * Writes the data used for generator to produce this counterexample in a compact binary form, e.g. to store it in a file.
+     * To be used with {@link PropertyChecker.Parameters#rechecking(InputStream)}.
+     */
+    void writeSerializedData(@NotNull OutputStream stream) throws IOException;
   }
   
 }
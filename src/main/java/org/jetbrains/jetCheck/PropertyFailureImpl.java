@@ -3,10 +3,12 @@ package org.jetbrains.jetCheck;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashSet;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 class PropertyFailureImpl<T> implements PropertyFailure<T> {
   private final CounterExampleImpl<T> initial;
@@ -15,20 +17,45 @@ class PropertyFailureImpl<T> implements PropertyFailure<T> {
   private int successfulSteps;
   final Iteration<T> iteration;
   private Throwable stoppingReason;
+  private final Map<ShrinkPass, PassStatistics> passStatistics = new LinkedHashMap<>();
+  private PassStatistics currentPass;
+  @Nullable private ExecutorService shrinkingExecutor;
   final boolean reproducible;
 
-  PropertyFailureImpl(@NotNull CounterExampleImpl<T> initial, Iteration<T> iteration) {
+  /**
+   * @param totalSteps the number of shrinking attempts made before, if shrinking is {@link PropertyChecker.Parameters#resumeFrom resumed}
+   * @param successfulSteps the number of successful ones among them
+   */
+  PropertyFailureImpl(@NotNull CounterExampleImpl<T> initial, Iteration<T> iteration, int totalSteps, int successfulSteps) {
     this.initial = initial;
     this.shrunk = initial;
     this.iteration = iteration;
+    this.totalSteps = totalSteps;
+    this.successfulSteps = successfulSteps;
     this.reproducible = iteration.session.parameters.serializedData != null || initial.tryReproducing();
-    try {
-      if (reproducible) {
+    if (reproducible) {
+      iteration.session.saveCheckpoint(iteration, this, true);
+      long start = System.nanoTime();
+      int threads = iteration.session.parameters.shrinkingThreads;
+      if (threads > 1) {
+        shrinkingExecutor = Executors.newFixedThreadPool(threads, r -> {
+          Thread thread = new Thread(r, "jetCheck shrinking");
+          thread.setDaemon(true);
+          return thread;
+        });
+      }
+      try {
         shrink();
       }
-    }
-    catch (Throwable e) {
-      stoppingReason = e;
+      catch (Throwable e) {
+        stoppingReason = e;
+      }
+      finally {
+        if (shrinkingExecutor != null) {
+          shrinkingExecutor.shutdownNow();
+        }
+      }
+      iteration.session.notifier.shrinkingFinished(this, System.nanoTime() - start);
     }
   }
 
@@ -81,20 +108,42 @@ class PropertyFailureImpl<T> implements PropertyFailure<T> {
   }
 
   private void shrink() {
+    List<ShrinkPass> passes = iteration.session.parameters.shrinkPasses;
+    for (ShrinkPass pass : passes) {
+      passStatistics.put(pass, new PassStatistics(pass));
+    }
+
     ShrinkStep lastSuccessfulShrink = null;
-    do {
-      lastSuccessfulShrink = shrinkIteration(lastSuccessfulShrink);
+    int index = 0;
+    while (index < passes.size()) {
+      ShrinkPass pass = passes.get(index);
+      ShrinkStep success = runPass(pass, index == 0 ? lastSuccessfulShrink : null);
+      if (index == 0) {
+        lastSuccessfulShrink = success;
+      }
+      index = success != null && pass.restartsOnSuccess ? 0 : index + 1;
     }
-    while (lastSuccessfulShrink != null);
   }
 
-  private ShrinkStep shrinkIteration(ShrinkStep limit) {
+  @Nullable
+  private ShrinkStep runPass(ShrinkPass pass, @Nullable ShrinkStep limit) {
+    currentPass = passStatistics.get(pass);
+    long start = System.nanoTime();
+    try {
+      return shrinkIteration(pass.createSteps(shrunk.data), limit);
+    }
+    finally {
+      currentPass.timeNanos += System.nanoTime() - start;
+    }
+  }
+
+  private ShrinkStep shrinkIteration(@Nullable ShrinkStep step, @Nullable ShrinkStep limit) {
     ShrinkStep lastSuccessfulShrink = null;
-    ShrinkStep step = shrunk.data.shrink();
     while (step != null) {
       step = findSuccessfulShrink(step, limit);
       if (step != null) {
         lastSuccessfulShrink = step;
+        iteration.session.saveCheckpoint(iteration, this, false);
         step = step.onSuccess(shrunk.data);
       }
     }
@@ -112,9 +161,8 @@ class PropertyFailureImpl<T> implements PropertyFailure<T> {
         if (tryStep(node, customizer)) {
           return step;
         }
-        CombinatorialIntCustomizer next = customizer.nextAttempt();
-        if (next != null) {
-          combinatorial.add(new CustomizedNode(next, step));
+        if (customizer.nextAttempt()) {
+          combinatorial.add(new CustomizedNode(customizer, step));
         }
       }
 
@@ -126,43 +174,205 @@ class PropertyFailureImpl<T> implements PropertyFailure<T> {
   @Nullable
   private ShrinkStep processDelayedCombinations(List<CustomizedNode> delayed) {
     Collections.sort(delayed);
+    if (shrinkingExecutor != null && delayed.size() > 1) {
+      return processInParallel(delayed, shrinkingExecutor);
+    }
 
     for (CustomizedNode customizedNode : delayed) {
       CombinatorialIntCustomizer customizer = customizedNode.customizer;
-      while (customizer != null) {
+      do {
         if (tryStep(customizedNode.step.apply(shrunk.data), customizer)) {
           return customizedNode.step;
         }
-        customizer = customizer.nextAttempt();
       }
+      while (customizer.nextAttempt());
     }
     return null;
   }
 
-  private boolean tryStep(StructureNode node, CombinatorialIntCustomizer customizer) {
-    try {
-      iteration.session.notifier.shrinkAttempt(this, iteration, node);
-      totalSteps++;
+  /**
+   * Runs the combination chains of the delayed nodes on several threads, and then commits their attempts in the same order
+   * as the sequential processing would, so that the result doesn't depend on the timing. The chains after the first one
+   * ending with a success (or a replay error) are cancelled, and their attempts are discarded.
+   */
+  @Nullable
+  private ShrinkStep processInParallel(List<CustomizedNode> delayed, ExecutorService executor) {
+    StructureNode base = shrunk.data;
+    AtomicInteger nextChain = new AtomicInteger();
+    AtomicInteger firstFinished = new AtomicInteger(delayed.size());
+    List<List<Attempt<T>>> results = new ArrayList<>(Collections.nCopies(delayed.size(), Collections.emptyList()));
+    Runnable worker = () -> {
+      int index;
+      while ((index = nextChain.getAndIncrement()) < firstFinished.get()) {
+        CustomizedNode customizedNode = delayed.get(index);
+        List<Attempt<T>> attempts = new ArrayList<>();
+        results.set(index, attempts);
+        do {
+          if (index > firstFinished.get()) break;
+          Attempt<T> attempt = replay(customizedNode.step.apply(base), customizedNode.customizer, null);
+          attempts.add(attempt);
+          if (attempt.example != null || attempt.replayError != null) {
+            firstFinished.accumulateAndGet(index, Math::min);
+            break;
+          }
+        }
+        while (customizedNode.customizer.nextAttempt());
+      }
+    };
 
-      HashSet<NodeId> unneeded = new HashSet<>();
-      T value;
+    List<Future<?>> futures = new ArrayList<>();
+    for (int i = 0; i < Math.min(iteration.session.parameters.shrinkingThreads, delayed.size()); i++) {
+      futures.add(executor.submit(worker));
+    }
+    for (Future<?> future : futures) {
       try {
-        value = iteration.generateValue(new ReplayDataStructure(node, iteration.sizeHint, customizer, unneeded));
-      } catch (Throwable e) {
-        iteration.session.notifier.replayFailed(e);
-        throw e;
+        future.get();
+      }
+      catch (InterruptedException e) {
+        throw new RuntimeException(e);
+      }
+      catch (ExecutionException e) {
+        throw e.getCause() instanceof RuntimeException ? (RuntimeException)e.getCause() : new RuntimeException(e.getCause());
       }
+    }
 
-      CounterExampleImpl<T> example = CounterExampleImpl.checkProperty(iteration, value, customizer.writeChanges(node.removeUnneeded(unneeded)));
-      if (example != null) {
-        shrunk = example;
-        successfulSteps++;
-        return true;
+    for (int i = 0; i < Math.min(firstFinished.get() + 1, delayed.size()); i++) {
+      for (Attempt<T> attempt : results.get(i)) {
+        if (commit(attempt, false)) {
+          return delayed.get(i).step;
+        }
       }
     }
+    return null;
+  }
+
+  private boolean tryStep(StructureNode node, CombinatorialIntCustomizer customizer) {
+    return commit(replay(node, customizer, iteration.session.notifier), true);
+  }
+
+  /**
+   * Replays and checks the given structure without changing this failure. With a null notifier, nothing is reported either,
+   * so that it can be done on a background thread, and {@link #commit} reports the attempt later.
+   */
+  private Attempt<T> replay(StructureNode node, CombinatorialIntCustomizer customizer, @Nullable StatusNotifier notifier) {
+    Attempt<T> attempt = new Attempt<>(node, System.nanoTime(), FlightRecorderEvents.beginShrinkStep());
+    if (notifier != null) {
+      notifier.shrinkAttempt(this, iteration, node, attempt.startNanos);
+    }
+    try {
+      HashSet<NodeId> unneeded = new HashSet<>();
+      T value = iteration.generateValue(new ReplayDataStructure(node, iteration.sizeHint, customizer, unneeded));
+      attempt.restored = true;
+      attempt.value = value;
+      attempt.example = CounterExampleImpl.checkProperty(iteration, value, customizer.writeChanges(node.removeUnneeded(unneeded)), notifier);
+    }
     catch (CannotRestoreValue ignored) {
+      // the shrunk data doesn't fit the generators, which just makes the attempt fail
+    }
+    catch (Throwable e) {
+      attempt.replayError = e;
+    }
+    attempt.durationNanos = System.nanoTime() - attempt.startNanos;
+    return attempt;
+  }
+
+  /**
+   * Accounts the given attempt, makes its example the minimal one if it's accepted, and finishes its Flight Recorder event.
+   * @param notified whether {@link #replay} has already reported the attempt's start and property check
+   */
+  private boolean commit(Attempt<T> attempt, boolean notified) {
+    StatusNotifier notifier = iteration.session.notifier;
+    if (!notified) {
+      notifier.shrinkAttempt(this, iteration, attempt.node, attempt.startNanos);
+    }
+    totalSteps++;
+    currentPass.attempts++;
+    if (attempt.replayError != null) {
+      notifier.replayFailed(attempt.replayError);
+      if (attempt.replayError instanceof Error) throw (Error)attempt.replayError;
+      throw attempt.replayError instanceof RuntimeException ? (RuntimeException)attempt.replayError : new RuntimeException(attempt.replayError);
+    }
+
+    boolean accepted = attempt.example != null;
+    if (!notified && attempt.restored) {
+      notifier.beforePropertyCheck(attempt.value);
+      if (accepted) {
+        notifier.propertyCheckFailed(attempt.example.getExceptionCause());
+      }
+    }
+    if (accepted) {
+      shrunk = attempt.example;
+      successfulSteps++;
+      currentPass.accepted++;
+    }
+    notifier.shrinkAttemptFinished(accepted, attempt.durationNanos);
+    FlightRecorderEvents.commitShrinkStep(attempt.event, iteration, attempt.node, totalSteps, accepted);
+    return accepted;
+  }
+
+  @NotNull
+  @Override
+  public List<ShrinkPassStatistics> getShrinkPassStatistics() {
+    return Collections.unmodifiableList(new ArrayList<>(passStatistics.values()));
+  }
+
+  String getShrinkPassReport() {
+    StringBuilder sb = new StringBuilder("Shrinking statistics:\n");
+    sb.append(String.format(Locale.ROOT, "%10s %10s %10s  %s%n", "attempts", "accepted", "time, ms", "pass"));
+    for (ShrinkPassStatistics each : getShrinkPassStatistics()) {
+      sb.append(String.format(Locale.ROOT, "%10d %10d %10d  %s%n",
+                              each.getAttemptCount(), each.getAcceptedCount(), each.getTimeNanos() / 1_000_000, each.getPass()));
+    }
+    return sb.toString();
+  }
+
+  private static class PassStatistics implements ShrinkPassStatistics {
+    final ShrinkPass pass;
+    int attempts;
+    int accepted;
+    long timeNanos;
+
+    PassStatistics(ShrinkPass pass) {
+      this.pass = pass;
+    }
+
+    @NotNull
+    @Override
+    public ShrinkPass getPass() {
+      return pass;
+    }
+
+    @Override
+    public int getAttemptCount() {
+      return attempts;
+    }
+
+    @Override
+    public int getAcceptedCount() {
+      return accepted;
+    }
+
+    @Override
+    public long getTimeNanos() {
+      return timeNanos;
+    }
+  }
+
+  private static class Attempt<T> {
+    final StructureNode node;
+    final long startNanos;
+    @Nullable final Object event;
+    long durationNanos;
+    boolean restored;
+    @Nullable T value;
+    @Nullable CounterExampleImpl<T> example;
+    @Nullable Throwable replayError;
+
+    Attempt(StructureNode node, long startNanos, @Nullable Object event) {
+      this.node = node;
+      this.startNanos = startNanos;
+      this.event = event;
     }
-    return false;
   }
 
   private static class CustomizedNode implements Comparable<CustomizedNode> {
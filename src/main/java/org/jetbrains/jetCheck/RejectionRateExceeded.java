@@ -0,0 +1,13 @@
+package org.jetbrains.jetCheck;
+
+/**
+ * Thrown after a successful check if generators rejected or discarded a larger proportion of the generated values
+ * than {@link PropertyChecker.Parameters#withMaxRejectionRate allowed}. Such generators waste most of their time on retries,
+ * and are better rewritten to produce acceptable values directly instead of filtering them with {@link Generator#suchThat}.
+ */
+@SuppressWarnings("ExceptionClassNameDoesntEndWithException")
+public class RejectionRateExceeded extends RuntimeException {
+  RejectionRateExceeded(String problem, double maxRate, String report) {
+    super(problem + ", while at most " + GenerationStatistics.formatPercent(maxRate) + " are allowed\n" + report);
+  }
+}
@@ -0,0 +1,111 @@
+package org.jetbrains.jetCheck;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Removes blocks of consecutive sub-structures from generic nodes anywhere in the tree, going in the reverse document order.
+ * This helps to shrink collections generated by hand-written loops rather than {@link Generator#listsOf}.
+ * The removed block grows twice after each success, and shrinks twice after each failure. If the generator then consumes
+ * less data than remains, the rest is cut by {@link StructureNode#removeUnneeded}.
+ */
+class RemoveChunk extends ShrinkStep {
+  private static final int INITIAL_LENGTH = 2;
+  private final List<StructureNode> candidates;
+  private final int candidateIndex;
+  private final int end;
+  private final int length;
+
+  private RemoveChunk(List<StructureNode> candidates, int candidateIndex, int end, int length) {
+    this.candidates = candidates;
+    this.candidateIndex = candidateIndex;
+    this.end = end;
+    this.length = length;
+    assert length > 0 && end - length >= 0;
+  }
+
+  @Nullable
+  static ShrinkStep fromEnd(StructureNode root) {
+    List<StructureNode> candidates = new ArrayList<>();
+    collectCandidates(root, candidates);
+    return startAt(candidates, candidates.size() - 1);
+  }
+
+  private static void collectCandidates(StructureNode node, List<StructureNode> result) {
+    if (node.shrinkProhibited) return;
+    if ((node.kind == StructureKind.GENERIC || node.kind == StructureKind.STREAM) && node.children.size() > 1) {
+      result.add(node);
+    }
+    for (StructureElement child : node.children) {
+      if (child instanceof StructureNode) {
+        collectCandidates((StructureNode)child, result);
+      }
+    }
+  }
+
+  @Nullable
+  private static ShrinkStep startAt(List<StructureNode> candidates, int candidateIndex) {
+    if (candidateIndex < 0) return null;
+    int size = candidates.get(candidateIndex).children.size();
+    return new RemoveChunk(candidates, candidateIndex, size, Math.min(INITIAL_LENGTH, size));
+  }
+
+  private StructureNode getNode() {
+    return candidates.get(candidateIndex);
+  }
+
+  @Override
+  List<?> getEqualityObjects() {
+    return Arrays.asList(getNode().id, end, length);
+  }
+
+  @Override
+  StructureNode apply(StructureNode root) {
+    StructureNode node = getNode();
+    List<StructureElement> lessItems = new ArrayList<>(node.children.size() - length);
+    lessItems.addAll(node.children.subList(0, end - length));
+    lessItems.addAll(node.children.subList(end, node.children.size()));
+    return root.replace(node.id, node.copyWithChildren(lessItems));
+  }
+
+  @Nullable
+  @Override
+  ShrinkStep onSuccess(@NotNull StructureNode smallerRoot) {
+    List<StructureNode> newCandidates = new ArrayList<>();
+    collectCandidates(smallerRoot, newCandidates);
+    NodeId id = getNode().id;
+    int index = newCandidates.size() - 1;
+    while (index >= 0 && newCandidates.get(index).id.number > id.number) index--;
+    if (index < 0) return null;
+
+    StructureNode inheritor = newCandidates.get(index);
+    int newEnd = Math.min(end - length, inheritor.children.size());
+    if (inheritor.id != id || newEnd == 0) return startAt(newCandidates, index - (inheritor.id == id ? 1 : 0));
+    return new RemoveChunk(newCandidates, index, newEnd, Math.min(length * 2, newEnd));
+  }
+
+  @Nullable
+  @Override
+  ShrinkStep onFailure() {
+    if (length > 1) {
+      return new RemoveChunk(candidates, candidateIndex, end, length / 2);
+    }
+    if (end > 1) {
+      return new RemoveChunk(candidates, candidateIndex, end - 1, Math.min(INITIAL_LENGTH, end - 1));
+    }
+    return startAt(candidates, candidateIndex - 1);
+  }
+
+  @Override
+  public String toString() {
+    return "RemoveChunk{" +
+           "end=" + end +
+           ", length=" + length +
+           ", node=" + getNode().id + ": " + getNode() +
+           '}';
+  }
+}
@@ -1,35 +1,101 @@
 package org.jetbrains.jetCheck;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
-import java.util.Iterator;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Set;
 import java.util.function.Predicate;
 
+/**
+ * Replays the numbers recorded in a structure. A single instance walks the whole tree as a cursor: nested generators get the same object,
+ * and the current node, position and size hint of each level are kept in reusable arrays, so that replaying (the inner loop of shrinking)
+ * doesn't allocate anything per sub-structure. Sharing the instance is safe, since {@link GenerativeDataStructure}
+ * already prohibits using an outer environment while a nested generator is running.
+ */
 class ReplayDataStructure extends AbstractDataStructure {
-  private final Iterator<StructureElement> iterator;
   private final IntCustomizer customizer;
   private final Set<NodeId> unneeded;
+  private final ReplayDataStructure root;
+  /** On the root structure, the cursor over the recorded items of lazy collections */
+  @Nullable private ReplayDataStructure lazyItems;
+  private StructureNode[] nodes = new StructureNode[16];
+  private int[] positions = new int[16];
+  private int[] sizeHints = new int[16];
+  private int depth;
 
   ReplayDataStructure(StructureNode node, int sizeHint, IntCustomizer customizer, Set<NodeId> unneeded) {
+    this(node, sizeHint, customizer, unneeded, null);
+  }
+
+  private ReplayDataStructure(StructureNode node, int sizeHint, IntCustomizer customizer, Set<NodeId> unneeded, @Nullable ReplayDataStructure root) {
     super(node, sizeHint);
-    this.iterator = node.childrenIterator();
     this.customizer = customizer;
     this.unneeded = unneeded;
+    this.root = root != null ? root : this;
+    nodes[0] = node;
+    sizeHints[0] = sizeHint;
+  }
+
+  @Override
+  public int getSizeHint() {
+    return sizeHints[depth];
   }
 
   @Override
   int drawInt(@NotNull IntDistribution distribution) {
-    return customizer.suggestInt(nextChild(IntData.class), distribution);
+    StructureElement next = nextChild();
+    if (!(next instanceof IntData)) throw new CannotRestoreValue();
+    return customizer.suggestInt((IntData)next, distribution);
+  }
+
+  @Override
+  long drawLong(@NotNull LongDistribution distribution) {
+    StructureElement next = nextChild();
+    if (!(next instanceof LongData) || !distribution.isValidValue(((LongData)next).value)) throw new CannotRestoreValue();
+    return ((LongData)next).value;
+  }
+
+  @Override
+  byte[] drawBytes(@NotNull IntDistribution length) {
+    return ((byte[])nextArray(byte[].class, length).array).clone();
+  }
+
+  @Override
+  int[] drawInts(@NotNull IntDistribution length, @NotNull IntDistribution elements) {
+    int[] array = (int[])nextArray(int[].class, length).array;
+    for (int i : array) {
+      if (!elements.isValidValue(i)) throw new CannotRestoreValue();
+    }
+    return array.clone();
+  }
+
+  @Override
+  long[] drawLongs(@NotNull IntDistribution length, @NotNull LongDistribution elements) {
+    long[] array = (long[])nextArray(long[].class, length).array;
+    for (long l : array) {
+      if (!elements.isValidValue(l)) throw new CannotRestoreValue();
+    }
+    return array.clone();
+  }
+
+  @NotNull
+  private ArrayData nextArray(Class<?> arrayClass, IntDistribution length) {
+    StructureElement next = nextChild();
+    if (!(next instanceof ArrayData) || !arrayClass.isInstance(((ArrayData)next).array)) throw new CannotRestoreValue();
+    ArrayData data = (ArrayData)next;
+    if (!length.isValidValue(data.length())) throw new CannotRestoreValue();
+    return data;
   }
 
   @NotNull
-  private <E extends StructureElement> E nextChild(Class<E> required) {
-    if (!iterator.hasNext()) throw new CannotRestoreValue();
-    Object next = iterator.next();
-    if (!required.isInstance(next)) throw new CannotRestoreValue();
-    //noinspection unchecked
-    return (E)next;
+  private StructureElement nextChild() {
+    List<StructureElement> children = nodes[depth].children;
+    int position = positions[depth];
+    if (position >= children.size()) throw new CannotRestoreValue();
+    positions[depth] = position + 1;
+    return children.get(position);
   }
 
   @Override
@@ -38,17 +104,82 @@ class ReplayDataStructure extends AbstractDataStructure {
   }
 
   private <T> T generate(@NotNull Generator<T> generator, int childSizeHint) {
-    ReplayDataStructure child = new ReplayDataStructure(nextChild(StructureNode.class), childSizeHint, customizer, unneeded);
-    T value = generator.getGeneratorFunction().apply(child);
-    if (child.iterator.hasNext()) {
-      unneeded.add(child.iterator.next().id);
+    enterChild(childSizeHint);
+    try {
+      T value = generator.getGeneratorFunction().apply(this);
+      markUnconsumedChildren();
+      return value;
+    }
+    finally {
+      nodes[depth--] = null;
+    }
+  }
+
+  @Override
+  public int generateInt(@NotNull IntGenerator generator) {
+    enterChild(childSizeHint());
+    try {
+      int value = generator.generateInt(this);
+      markUnconsumedChildren();
+      return value;
+    }
+    finally {
+      nodes[depth--] = null;
     }
-    return value;
+  }
+
+  @Override
+  public long generateLong(@NotNull LongGenerator generator) {
+    enterChild(childSizeHint());
+    try {
+      long value = generator.generateLong(this);
+      markUnconsumedChildren();
+      return value;
+    }
+    finally {
+      nodes[depth--] = null;
+    }
+  }
+
+  @Override
+  public double generateDouble(@NotNull DoubleGenerator generator) {
+    enterChild(childSizeHint());
+    try {
+      double value = generator.generateDouble(this);
+      markUnconsumedChildren();
+      return value;
+    }
+    finally {
+      nodes[depth--] = null;
+    }
+  }
+
+  private void markUnconsumedChildren() {
+    List<StructureElement> children = nodes[depth].children;
+    if (positions[depth] < children.size()) {
+      unneeded.add(children.get(positions[depth]).id);
+    }
+  }
+
+  private void enterChild(int sizeHint) {
+    StructureElement next = nextChild();
+    if (!(next instanceof StructureNode)) throw new CannotRestoreValue();
+
+    StructureNode node = (StructureNode)next;
+    depth++;
+    if (depth == nodes.length) {
+      nodes = Arrays.copyOf(nodes, depth * 2);
+      positions = Arrays.copyOf(positions, depth * 2);
+      sizeHints = Arrays.copyOf(sizeHints, depth * 2);
+    }
+    nodes[depth] = node;
+    positions[depth] = 0;
+    sizeHints[depth] = sizeHint;
   }
 
   @Override
   <T> T generateNonShrinkable(@NotNull Generator<T> generator) {
-    return generate(generator, sizeHint);
+    return generate(generator, getSizeHint());
   }
 
   @Override
@@ -58,15 +189,41 @@ class ReplayDataStructure extends AbstractDataStructure {
     return value;
   }
 
+  @Override
+  <T> boolean generateAccepted(@NotNull Generator<T> generator, @NotNull Predicate<? super T> acceptor, int attempts) {
+    if (!acceptor.test(generate(generator))) throw new CannotRestoreValue();
+    return true;
+  }
+
+  @Override
+  boolean changeCollectionSize(int size) {
+    throw new IllegalStateException("The recorded size is already the actual one");
+  }
+
+  @Override
+  <T> T generateLazyItem(@NotNull Generator<T> generator) {
+    if (root != this) return root.generateLazyItem(generator);
+
+    if (!generationFinished || depth != 0 || lazyItems != null && lazyItems.depth != 0) {
+      throw new IllegalStateException(LAZY_ITEM_DURING_GENERATION);
+    }
+    if (lazyItems == null) {
+      StructureElement next = nextChild();
+      if (!(next instanceof StructureNode) || ((StructureNode)next).kind != StructureKind.STREAM) throw new CannotRestoreValue();
+      lazyItems = new ReplayDataStructure((StructureNode)next, sizeHint, customizer, unneeded, this);
+    }
+    return lazyItems.generate(generator);
+  }
+
   @Override
   void changeKind(StructureKind kind) {
-    if (node.kind != kind) {
+    if (nodes[depth].kind != kind) {
       throw new CannotRestoreValue();
     }
   }
 
   @Override
   public String toString() {
-    return node.toString();
+    return nodes[depth].toString();
   }
-}
\ No newline at end of file
+}
@@ -0,0 +1,203 @@
+package org.jetbrains.jetCheck;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * Shrinks equal ints and longs together, for failures requiring some values to be equal (e.g. a key inserted and then looked up),
+ * which shrinking each number separately can't make smaller. The numbers are grouped by the position inside equal sub-structures
+ * (which also shrinks e.g. the lengths of equal lists together), and then just by their value.
+ * Each group is shrunk as its first number by {@link StructureElement#shrink} and then by {@link ShrinkToBoundary#shrinkToBoundary}
+ * (since {@link ShrinkPass#BOUNDARIES} changes the numbers one by one), with the same value written to the others.
+ * At most {@link #MAX_GROUPS} groups are tried in one pass.
+ */
+class ShrinkDuplicates extends ShrinkStep {
+  private static final int MAX_GROUPS = 16;
+  private final StructureNode root;
+  private final List<List<NodeId>> groups;
+  private final int groupIndex;
+  private final ShrinkStep step;
+  /** Whether {@link #step} comes from {@link ShrinkToBoundary#shrinkToBoundary}, i.e. halving the group is over */
+  private final boolean toBoundary;
+
+  private ShrinkDuplicates(StructureNode root, List<List<NodeId>> groups, int groupIndex, ShrinkStep step, boolean toBoundary) {
+    this.root = root;
+    this.groups = groups;
+    this.groupIndex = groupIndex;
+    this.step = step;
+    this.toBoundary = toBoundary;
+  }
+
+  @Nullable
+  static ShrinkStep fromStart(StructureNode root) {
+    return startGroup(root, findGroups(root), 0);
+  }
+
+  private static List<List<NodeId>> findGroups(StructureNode root) {
+    List<StructureElement> numbers = new ArrayList<>();
+    Map<Long, List<StructureNode>> nodesByFingerprint = new LinkedHashMap<>();
+    collect(root, numbers, nodesByFingerprint);
+
+    Set<List<NodeId>> groups = new LinkedHashSet<>();
+    for (List<StructureNode> equalNodes : nodesByFingerprint.values()) {
+      if (equalNodes.size() < 2 || !equalNodes.get(0).equals(equalNodes.get(1))) continue;
+
+      List<List<StructureElement>> numbersByNode = new ArrayList<>();
+      for (StructureNode node : equalNodes) {
+        List<StructureElement> nodeNumbers = new ArrayList<>();
+        collect(node, nodeNumbers, new HashMap<>());
+        numbersByNode.add(nodeNumbers);
+      }
+      List<StructureElement> firstNumbers = numbersByNode.get(0);
+      for (int i = 0; i < firstNumbers.size(); i++) {
+        Number value = valueOf(firstNumbers.get(i));
+        if (value.longValue() == 0) continue;
+        List<NodeId> group = new ArrayList<>();
+        for (List<StructureElement> nodeNumbers : numbersByNode) {
+          if (nodeNumbers.size() == firstNumbers.size() && value.equals(valueOf(nodeNumbers.get(i)))) {
+            group.add(nodeNumbers.get(i).id);
+          }
+        }
+        if (group.size() > 1) groups.add(group);
+      }
+    }
+
+    // ints and longs are never grouped together, because Integer and Long values aren't equal
+    Map<Number, List<NodeId>> byValue = new LinkedHashMap<>();
+    for (StructureElement data : numbers) {
+      Number value = valueOf(data);
+      if (value.longValue() != 0) {
+        byValue.computeIfAbsent(value, __ -> new ArrayList<>()).add(data.id);
+      }
+    }
+    for (List<NodeId> group : byValue.values()) {
+      if (group.size() > 1) groups.add(group);
+    }
+    return new ArrayList<>(groups);
+  }
+
+  private static void collect(StructureNode node, List<StructureElement> numbers, Map<Long, List<StructureNode>> nodesByFingerprint) {
+    if (node.shrinkProhibited) return;
+    for (StructureElement child : node.children) {
+      if (child instanceof IntData || child instanceof LongData) {
+        numbers.add(child);
+      } else if (child instanceof StructureNode) {
+        StructureNode childNode = (StructureNode)child;
+        if (childNode.children.size() > 1) {
+          nodesByFingerprint.computeIfAbsent(childNode.fingerprint(), __ -> new ArrayList<>()).add(childNode);
+        }
+        collect(childNode, numbers, nodesByFingerprint);
+      }
+    }
+  }
+
+  /** @return the value of the given {@link IntData} as Integer, or of the given {@link LongData} as Long */
+  private static Number valueOf(StructureElement number) {
+    return number instanceof IntData ? (Number)((IntData)number).value : (Number)((LongData)number).value;
+  }
+
+  @Nullable
+  private static ShrinkStep startGroup(StructureNode root, List<List<NodeId>> groups, int groupIndex) {
+    for (; groupIndex < Math.min(groups.size(), MAX_GROUPS); groupIndex++) {
+      StructureElement first = getEqualNumbers(root, groups.get(groupIndex));
+      ShrinkStep step = first == null ? null : first.shrink();
+      if (step != null) {
+        return new ShrinkDuplicates(root, groups, groupIndex, step, false);
+      }
+      ShrinkStep boundaryStep = startBoundarySearch(root, groups, groupIndex);
+      if (boundaryStep != null) return boundaryStep;
+    }
+    return null;
+  }
+
+  @Nullable
+  private static ShrinkStep startBoundarySearch(StructureNode root, List<List<NodeId>> groups, int groupIndex) {
+    ShrinkStep step = ShrinkToBoundary.shrinkToBoundary(getEqualNumbers(root, groups.get(groupIndex)));
+    return step == null ? null : new ShrinkDuplicates(root, groups, groupIndex, step, true);
+  }
+
+  /** @return the first number of the group, if all its numbers are still present in the given structure and equal */
+  @Nullable
+  private static StructureElement getEqualNumbers(StructureNode root, List<NodeId> group) {
+    StructureElement first = null;
+    for (NodeId id : group) {
+      StructureElement element = root.findChildById(id);
+      if (!(element instanceof IntData || element instanceof LongData)) return null;
+      if (first == null) {
+        first = element;
+      }
+      else if (!valueOf(element).equals(valueOf(first))) {
+        return null;
+      }
+    }
+    return first;
+  }
+
+  @Override
+  List<?> getEqualityObjects() {
+    return Arrays.asList(groups.get(groupIndex), step, toBoundary);
+  }
+
+  @Nullable
+  @Override
+  StructureNode apply(StructureNode root) {
+    StructureNode changed = step.apply(root);
+    List<NodeId> group = groups.get(groupIndex);
+    StructureElement first = changed == null ? null : changed.findChildById(group.get(0));
+    if (first == null) return null;
+
+    for (NodeId id : group.subList(1, group.size())) {
+      StructureElement other = Objects.requireNonNull(changed.findChildById(id));
+      StructureElement copy = copyValue(first, other);
+      if (copy == null) return null;
+      changed = changed.replace(id, copy);
+    }
+    return changed;
+  }
+
+  /** @return {@code target} with the value of {@code source}, or null if the value isn't valid for the target's distribution */
+  @Nullable
+  private static StructureElement copyValue(StructureElement source, StructureElement target) {
+    if (target instanceof IntData) {
+      int value = ((IntData)source).value;
+      IntDistribution distribution = ((IntData)target).distribution;
+      return distribution.isValidValue(value) ? new IntData(target.id, value, distribution) : null;
+    }
+    long value = ((LongData)source).value;
+    LongDistribution distribution = ((LongData)target).distribution;
+    return distribution.isValidValue(value) ? new LongData(target.id, value, distribution) : null;
+  }
+
+  @Nullable
+  @Override
+  ShrinkStep onSuccess(@NotNull StructureNode smallerRoot) {
+    if (getEqualNumbers(smallerRoot, groups.get(groupIndex)) != null) {
+      ShrinkStep next = step.onSuccess(smallerRoot);
+      if (next != null) return new ShrinkDuplicates(smallerRoot, groups, groupIndex, next, toBoundary);
+      if (!toBoundary) {
+        ShrinkStep boundaryStep = startBoundarySearch(smallerRoot, groups, groupIndex);
+        if (boundaryStep != null) return boundaryStep;
+      }
+    }
+    return startGroup(smallerRoot, groups, groupIndex + 1);
+  }
+
+  @Nullable
+  @Override
+  ShrinkStep onFailure() {
+    ShrinkStep next = step.onFailure();
+    if (next != null) return new ShrinkDuplicates(root, groups, groupIndex, next, toBoundary);
+    if (!toBoundary) {
+      ShrinkStep boundaryStep = startBoundarySearch(root, groups, groupIndex);
+      if (boundaryStep != null) return boundaryStep;
+    }
+    return startGroup(root, groups, groupIndex + 1);
+  }
+
+  @Override
+  public String toString() {
+    return "ShrinkDuplicates{" + groups.get(groupIndex) + ": " + step + "}";
+  }
+}
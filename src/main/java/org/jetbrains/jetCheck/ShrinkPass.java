@@ -0,0 +1,72 @@
+package org.jetbrains.jetCheck;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The kinds of changes tried when shrinking a counterexample. The passes are run in the order given to
+ * {@link PropertyChecker.Parameters#withShrinkPasses}: each one tries to make the counterexample smaller until it can't,
+ * and after a success of most passes, shrinking starts again from the first one.
+ * The number of attempts and the time spent in each pass is available via {@link PropertyFailure#getShrinkPassStatistics()}.
+ */
+public enum ShrinkPass {
+  /** Removes list ranges, shrinks ints from the end by halving, and replaces recursive structures with their smaller parts of the same kind */
+  STRUCTURE(true) {
+    @Override
+    ShrinkStep createSteps(StructureNode root) {
+      return root.shrink();
+    }
+  },
+  /** Shrinks equal ints together, for failures requiring some values to be equal */
+  DUPLICATES(true) {
+    @Override
+    ShrinkStep createSteps(StructureNode root) {
+      return ShrinkDuplicates.fromStart(root);
+    }
+  },
+  /**
+   * Sorts list items by size and replaces them with the smallest sibling, to make the result more canonical.
+   * Not used by default: it doesn't make counterexamples smaller, and costs extra attempts for each list.
+   */
+  NORMALIZE_LISTS(false) {
+    @Override
+    ShrinkStep createSteps(StructureNode root) {
+      return NormalizeListItems.fromEnd(root);
+    }
+  },
+  /**
+   * Removes blocks of consecutive sub-structures, e.g. items of collections generated by hand-written loops.
+   * Not used by default: it makes such counterexamples smaller, but at the cost of more attempts, and doesn't help other generators.
+   */
+  REMOVE_CHUNKS(true) {
+    @Override
+    ShrinkStep createSteps(StructureNode root) {
+      return RemoveChunk.fromEnd(root);
+    }
+  },
+  /**
+   * Finds the exact failure boundary of ints and longs by bisection, after {@link #STRUCTURE} has stopped halving them,
+   * e.g. {@code 1_000_000} instead of some bigger value for {@code i < 1_000_000}
+   */
+  BOUNDARIES(false) {
+    @Override
+    ShrinkStep createSteps(StructureNode root) {
+      return ShrinkToBoundary.fromEnd(root);
+    }
+  };
+
+  static final List<ShrinkPass> DEFAULT_ORDER = Collections.unmodifiableList(Arrays.asList(STRUCTURE, DUPLICATES, BOUNDARIES));
+
+  /** Whether a success of this pass can enable the previous passes to make more changes */
+  final boolean restartsOnSuccess;
+
+  ShrinkPass(boolean restartsOnSuccess) {
+    this.restartsOnSuccess = restartsOnSuccess;
+  }
+
+  @Nullable
+  abstract ShrinkStep createSteps(StructureNode root);
+}
@@ -0,0 +1,97 @@
+package org.jetbrains.jetCheck;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Finds the exact failure boundary of ints and longs (e.g. {@code 1_000_000} for {@code i < 1_000_000}), going in the reverse document order.
+ * {@link IntData#shrink} stops halving at a value which can be almost twice bigger than the smallest failing one, and this pass
+ * continues from there by {@link IntData#shrinkToBoundary bisection}. The numbers that {@link StructureNode#shrink} doesn't change
+ * (list lengths and choice indices) are skipped.
+ */
+class ShrinkToBoundary extends ShrinkStep {
+  private final StructureNode root;
+  private final List<NodeId> numbers;
+  private final int index;
+  private final ShrinkStep step;
+
+  private ShrinkToBoundary(StructureNode root, List<NodeId> numbers, int index, ShrinkStep step) {
+    this.root = root;
+    this.numbers = numbers;
+    this.index = index;
+    this.step = step;
+  }
+
+  @Nullable
+  static ShrinkStep fromEnd(StructureNode root) {
+    List<NodeId> numbers = new ArrayList<>();
+    collectNumbers(root, numbers);
+    return startAt(root, numbers, numbers.size() - 1);
+  }
+
+  private static void collectNumbers(StructureNode node, List<NodeId> result) {
+    if (node.shrinkProhibited) return;
+    int start = node.kind == StructureKind.GENERIC || node.kind == StructureKind.STREAM ? 0 : 1;
+    for (int i = start; i < node.children.size(); i++) {
+      StructureElement child = node.children.get(i);
+      if (child instanceof IntData || child instanceof LongData) {
+        result.add(child.id);
+      } else if (child instanceof StructureNode) {
+        collectNumbers((StructureNode)child, result);
+      }
+    }
+  }
+
+  @Nullable
+  private static ShrinkStep startAt(StructureNode root, List<NodeId> numbers, int index) {
+    for (; index >= 0; index--) {
+      ShrinkStep step = shrinkToBoundary(root.findChildById(numbers.get(index)));
+      if (step != null) {
+        return new ShrinkToBoundary(root, numbers, index, step);
+      }
+    }
+    return null;
+  }
+
+  /** @return the bisection step of the given int or long, or null if it's something else or already at the boundary */
+  @Nullable
+  static ShrinkStep shrinkToBoundary(@Nullable StructureElement element) {
+    return element instanceof IntData ? ((IntData)element).shrinkToBoundary() :
+           element instanceof LongData ? ((LongData)element).shrinkToBoundary() :
+           null;
+  }
+
+  @Override
+  List<?> getEqualityObjects() {
+    return Arrays.asList(numbers.get(index), step);
+  }
+
+  @Nullable
+  @Override
+  StructureNode apply(StructureNode root) {
+    return step.apply(root);
+  }
+
+  @Nullable
+  @Override
+  ShrinkStep onSuccess(@NotNull StructureNode smallerRoot) {
+    ShrinkStep next = step.onSuccess(smallerRoot);
+    return next != null ? new ShrinkToBoundary(smallerRoot, numbers, index, next) : startAt(smallerRoot, numbers, index - 1);
+  }
+
+  @Nullable
+  @Override
+  ShrinkStep onFailure() {
+    ShrinkStep next = step.onFailure();
+    return next != null ? new ShrinkToBoundary(root, numbers, index, next) : startAt(root, numbers, index - 1);
+  }
+
+  @Override
+  public String toString() {
+    return "ShrinkToBoundary{" + numbers.get(index) + ": " + step + "}";
+  }
+}
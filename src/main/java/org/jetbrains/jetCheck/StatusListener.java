@@ -0,0 +1,55 @@
+package org.jetbrains.jetCheck;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Receives structured progress events from a property check, e.g. to feed a CI dashboard or to collect metrics
+ * (see {@link CheckMetrics} for a ready-to-use implementation). Register it via {@link PropertyChecker.Parameters#withStatusListener}.<p></p>
+ *
+ * All methods have empty default implementations, so a listener only needs to override the events it's interested in.
+ * The methods are invoked synchronously on the checking thread and should be cheap; an exception thrown from a listener
+ * aborts the check. Durations are measured with {@link System#nanoTime()}.
+ */
+public interface StatusListener {
+
+  /** Called before the value for the given iteration (counted from 1) is generated */
+  default void iterationStarted(int iterationNumber) {}
+
+  /**
+   * Called after an iteration has generated its value and checked the property on it, whether successfully or not,
+   * and also when the iteration fails to generate a value (e.g. the generator throws).
+   * @param durationNanos the time spent on the iteration, including discarded generation attempts, but excluding shrinking
+   */
+  default void iterationFinished(int iterationNumber, long durationNanos) {}
+
+  /** Called when a generated value is thrown away and the iteration tries to generate another one instead */
+  default void generationDiscarded(int iterationNumber, @NotNull DiscardReason reason) {}
+
+  /** Called when the property is falsified in the given iteration, before shrinking starts */
+  default void counterExampleFound(int iterationNumber) {}
+
+  /**
+   * Called after each attempt to check the property on a shrunk example.
+   * @param accepted whether the property still failed, so that the shrunk example became the new minimal one
+   * @param durationNanos the time spent on replaying the generator and checking the property
+   */
+  default void shrinkAttempted(boolean accepted, long durationNanos) {}
+
+  /** Called when re-running the generator on recorded or shrunk data fails with an exception */
+  default void replayFailed(@NotNull Throwable reason) {}
+
+  /**
+   * Called when shrinking is over, either because no smaller example could be found, or because it was stopped prematurely.
+   * @param attempts the number of shrunk examples tried, see {@link PropertyFailure#getTotalShrinkingExampleCount()}
+   * @param stages the number of successful minimizations, see {@link PropertyFailure#getShrinkingStageCount()}
+   */
+  default void shrinkingFinished(int attempts, int stages, long durationNanos) {}
+
+  /** Why a generated value was thrown away, see {@link #generationDiscarded} */
+  enum DiscardReason {
+    /** the generator couldn't produce a value satisfying some {@link Generator#suchThat} condition */
+    CONDITION_NOT_SATISFIED,
+    /** the generator produced the same data as some recent iteration */
+    DUPLICATE
+  }
+}
@@ -8,40 +8,63 @@ import java.io.StringWriter;
 import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.FormatStyle;
+import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author peter
  */
 @SuppressWarnings("UseOfSystemOutOrSystemErr")
 class StatusNotifier {
+  private static final long PRINT_INTERVAL = TimeUnit.SECONDS.toNanos(5);
   private final PropertyChecker.Parameters parameters;
+  private final List<StatusListener> listeners;
   private int currentIteration;
-  private long lastPrinted = System.currentTimeMillis();
+  private long lastPrinted = System.nanoTime();
 
   StatusNotifier(PropertyChecker.Parameters parameters) {
     this.parameters = parameters;
+    this.listeners = parameters.listeners;
   }
 
-  void iterationStarted(int iteration) {
+  void iterationStarted(int iteration, long startNanos) {
     currentIteration = iteration;
-    if (shouldPrint()) {
+    for (StatusListener listener : listeners) {
+      listener.iterationStarted(iteration);
+    }
+    if (shouldPrint(startNanos)) {
       System.out.println(formatCurrentTime() + ": iteration " + currentIteration + " of " + parameters.getIterationCount() + "...");
     }
   }
 
+  void iterationFinished(long durationNanos) {
+    for (StatusListener listener : listeners) {
+      listener.iterationFinished(currentIteration, durationNanos);
+    }
+  }
+
+  void generationDiscarded(StatusListener.DiscardReason reason) {
+    for (StatusListener listener : listeners) {
+      listener.generationDiscarded(currentIteration, reason);
+    }
+  }
+
   void counterExampleFound(Iteration<?> iteration) {
+    for (StatusListener listener : listeners) {
+      listener.counterExampleFound(currentIteration);
+    }
     if (parameters.silent) return;
 
-    lastPrinted = System.currentTimeMillis();
+    lastPrinted = System.nanoTime();
     System.err.println(formatCurrentTime() + ": failed on iteration " + currentIteration + " (" + iteration.printSeeds() + "), shrinking...");
   }
 
-  private boolean shouldPrint() {
+  private boolean shouldPrint(long nowNanos) {
     if (parameters.silent) return false;
 
-    if (System.currentTimeMillis() - lastPrinted > 5_000) {
-      lastPrinted = System.currentTimeMillis();
+    if (nowNanos - lastPrinted > PRINT_INTERVAL) {
+      lastPrinted = nowNanos;
       return true;
     }
     return false;
@@ -50,8 +73,8 @@ class StatusNotifier {
   private int lastReportedStage = -1;
   private String lastReportedTrace = null;
 
-  <T> void shrinkAttempt(PropertyFailure<T> failure, Iteration<T> iteration, StructureNode data) {
-    if (shouldPrint()) {
+  <T> void shrinkAttempt(PropertyFailure<T> failure, Iteration<T> iteration, StructureNode data, long startNanos) {
+    if (shouldPrint(startNanos)) {
       int stage = failure.getShrinkingStageCount();
       System.out.println(formatCurrentTime() + ": still shrinking (" + iteration.printSeeds() + "). " +
                          "Examples tried: " + failure.getTotalShrinkingExampleCount() +
@@ -77,6 +100,18 @@ class StatusNotifier {
     }
   }
 
+  void shrinkAttemptFinished(boolean accepted, long durationNanos) {
+    for (StatusListener listener : listeners) {
+      listener.shrinkAttempted(accepted, durationNanos);
+    }
+  }
+
+  void shrinkingFinished(PropertyFailure<?> failure, long durationNanos) {
+    for (StatusListener listener : listeners) {
+      listener.shrinkingFinished(failure.getTotalShrinkingExampleCount(), failure.getShrinkingStageCount(), durationNanos);
+    }
+  }
+
   void eofException() {
     if (parameters.silent) return;
 
@@ -129,6 +164,9 @@ class StatusNotifier {
   }
 
   void replayFailed(@NotNull Throwable e) {
+    for (StatusListener listener : listeners) {
+      listener.replayFailed(e);
+    }
     if (parameters.printData) {
       System.out.println("  failed: " + e.getClass().getName());
     }
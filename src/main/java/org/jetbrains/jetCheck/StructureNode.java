@@ -3,8 +3,9 @@ package org.jetbrains.jetCheck;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.io.ByteArrayOutputStream;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongConsumer;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
@@ -27,13 +28,24 @@ abstract class StructureElement {
   @Nullable
   abstract StructureElement findChildById(NodeId id);
   
-  abstract void serialize(ByteArrayOutputStream out);
+  /** Passes all the numbers (ints and longs) of this structure to the given consumer, in the order they were generated */
+  abstract void serialize(LongConsumer out);
+
+  /** @return a 64-bit hash of the structure, such that structures {@link #equals equal} to each other have the same fingerprints */
+  abstract long fingerprint();
 
   abstract StructureElement removeUnneeded(Set<NodeId> unneeded);
+
+  /**
+   * @return a copy of this structure with ids numbered in the document order by the given counter, as {@link #replace} and {@link #findChildById} expect.
+   * Needed after the children are reordered or copied.
+   */
+  abstract StructureElement renumber(AtomicInteger counter);
 }
 
 class StructureNode extends StructureElement {
-  final List<StructureElement> children;
+  /** A mutable list while the node is being generated, and a {@link ChildVector} after it's {@link #freeze frozen} or copied */
+  List<StructureElement> children;
   @NotNull StructureKind kind = StructureKind.GENERIC;
   boolean shrinkProhibited;
 
@@ -47,14 +59,25 @@ class StructureNode extends StructureElement {
   }
 
   StructureNode copyWithChildren(List<StructureElement> children) {
-    StructureNode node = new StructureNode(id, children);
+    StructureNode node = new StructureNode(id, ChildVector.of(children));
     node.kind = kind;
     node.shrinkProhibited = shrinkProhibited;
     return node;
   }
 
-  Iterator<StructureElement> childrenIterator() {
-    return children.iterator();
+  /**
+   * Stores the children of this node and of its not yet frozen descendants in {@link ChildVector}s, so that the {@link #replace}
+   * calls made when shrinking copy only the paths to the replaced elements. Called when the generation of the node is over.
+   */
+  void freeze() {
+    if (children instanceof ChildVector) return;
+
+    for (StructureElement child : children) {
+      if (child instanceof StructureNode) {
+        ((StructureNode)child).freeze();
+      }
+    }
+    children = ChildVector.of(children);
   }
 
   void addChild(StructureElement child) {
@@ -84,7 +107,7 @@ class StructureNode extends StructureElement {
 
   @Nullable
   ShrinkStep shrinkChild(int index) {
-    int minIndex = kind == StructureKind.GENERIC ? 0 : 1;
+    int minIndex = kind == StructureKind.GENERIC || kind == StructureKind.STREAM ? 0 : 1;
     for (; index >= minIndex; index--) {
       ShrinkStep childShrink = children.get(index).shrink();
       if (childShrink != null) return wrapChildShrink(index, childShrink);
@@ -186,9 +209,7 @@ class StructureNode extends StructureElement {
     StructureElement newChild = oldChild.replace(id, replacement);
     if (oldChild == newChild) return this;
 
-    List<StructureElement> newChildren = new ArrayList<>(this.children);
-    newChildren.set(index, newChild);
-    return copyWithChildren(newChildren);
+    return copyWithChildren(ChildVector.of(children).with(index, newChild));
   }
 
   @Nullable
@@ -200,16 +221,38 @@ class StructureNode extends StructureElement {
   }
 
   @Override
-  void serialize(ByteArrayOutputStream out) {
+  void serialize(LongConsumer out) {
     for (StructureElement child : children) {
       child.serialize(out);
     }
   }
 
+  @Override
+  long fingerprint() {
+    long hash = children.size();
+    for (StructureElement child : children) {
+      hash = hash * 0x100000001B3L + child.fingerprint();
+    }
+    // mix the bits, so that a node doesn't get the same fingerprint as a single int child of the same value
+    hash ^= hash >>> 33;
+    hash *= 0xFF51AFD7ED558CCDL;
+    hash ^= hash >>> 33;
+    return hash;
+  }
+
+  /** @return the index of the last child whose id isn't greater than the given one, relying on the ids being ascending in the document order */
   private int indexOfChildContaining(NodeId id) {
-    int i = 0;
-    while (i < children.size() && children.get(i).id.number <= id.number) i++;
-    return i - 1;
+    int low = 0;
+    int high = children.size() - 1;
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      if (children.get(middle).id.number <= id.number) {
+        low = middle + 1;
+      } else {
+        high = middle - 1;
+      }
+    }
+    return low - 1;
   }
 
   @Override
@@ -229,6 +272,19 @@ class StructureNode extends StructureElement {
     return changed ? copyWithChildren(replaced) : this;
   }
 
+  @Override
+  StructureNode renumber(AtomicInteger counter) {
+    NodeId newId = id.renumbered(counter);
+    List<StructureElement> newChildren = new ArrayList<>(children.size());
+    for (StructureElement child : children) {
+      newChildren.add(child.renumber(counter));
+    }
+    StructureNode node = new StructureNode(newId, ChildVector.of(newChildren));
+    node.kind = kind;
+    node.shrinkProhibited = shrinkProhibited;
+    return node;
+  }
+
   @Override
   public boolean equals(Object obj) {
     return obj instanceof StructureNode && children.equals(((StructureNode)obj).children);
@@ -245,6 +301,7 @@ class StructureNode extends StructureElement {
     switch (kind) {
       case LIST: return "[" + inner + "]";
       case CHOICE: return "?(" + inner + ")";
+      case STREAM: return "<" + inner + ">";
       default: return "(" + inner + ")";
     }
   }
@@ -266,24 +323,56 @@ class IntData extends StructureElement {
   ShrinkStep shrink() {
     if (value == 0) return null;
 
-    int minValue = 0;
-    if (distribution instanceof BoundedIntDistribution) {
-      minValue = Math.max(minValue, distribution.getMin());
-    }
+    int minValue = getMinValue();
     return tryInt(minValue, () -> null, this::tryNegation);
   }
 
+  private int getMinValue() {
+    return distribution instanceof BoundedIntDistribution ? Math.max(0, distribution.getMin()) : 0;
+  }
+
   private ShrinkStep tryNegation() {
-    if (value < 0) {
-      return tryInt(-value, () -> divisionLoop(-value), () -> divisionLoop(value));
+    if (value < 0 && value != Integer.MIN_VALUE) {
+      return tryInt(-value, () -> divisionLoop(0, -value), () -> divisionLoop(0, value));
     }
-    return divisionLoop(value);
+    return divisionLoop(getMinValue(), value);
   }
 
-  private ShrinkStep divisionLoop(int value) {
-    if (value == 0) return null;
-    int divided = value / 2;
-    return tryInt(divided, () -> divisionLoop(divided), null);
+  /**
+   * Halves the distance to {@code bound} while the failure reproduces.
+   * @param bound a value known not to reproduce the failure
+   * @param failing a value known to reproduce it
+   */
+  private ShrinkStep divisionLoop(int bound, int failing) {
+    if (Math.abs((long)failing - bound) <= 1) return null;
+    int middle = middle(bound, failing);
+    return tryInt(middle, () -> divisionLoop(bound, middle), null);
+  }
+
+  /**
+   * Used by {@link ShrinkPass#BOUNDARIES} after {@link #shrink} has stopped halving, when the middle between the value and the minimum
+   * doesn't reproduce the failure: if the value next to this one reproduces it, the exact boundary is found by bisection
+   * in O(log(distance)) steps. Otherwise the property most likely depends on this exact value, so further attempts would be wasted.
+   */
+  @Nullable
+  ShrinkStep shrinkToBoundary() {
+    int bound = value < 0 ? 0 : getMinValue();
+    return Math.abs((long)value - bound) <= 1 ? null : tryNeighbor(middle(bound, value), value);
+  }
+
+  private ShrinkStep tryNeighbor(int bound, int failing) {
+    int neighbor = failing > bound ? failing - 1 : failing + 1;
+    return neighbor == bound ? null : tryInt(neighbor, () -> bisect(bound, neighbor), null);
+  }
+
+  private ShrinkStep bisect(int bound, int failing) {
+    if (Math.abs((long)failing - bound) <= 1) return null;
+    int middle = middle(bound, failing);
+    return tryInt(middle, () -> bisect(bound, middle), () -> bisect(middle, failing));
+  }
+
+  private static int middle(int bound, int failing) {
+    return (int)(bound + ((long)failing - bound) / 2);
   }
 
   private ShrinkStep tryInt(int value, @NotNull Supplier<ShrinkStep> success, @Nullable Supplier<ShrinkStep> fail) {
@@ -305,8 +394,13 @@ class IntData extends StructureElement {
   }
 
   @Override
-  void serialize(ByteArrayOutputStream out) {
-    DataSerializer.writeINT(out, value);
+  void serialize(LongConsumer out) {
+    out.accept(value);
+  }
+
+  @Override
+  long fingerprint() {
+    return value;
   }
 
   @Override
@@ -314,6 +408,11 @@ class IntData extends StructureElement {
     return this;
   }
 
+  @Override
+  IntData renumber(AtomicInteger counter) {
+    return new IntData(id.renumbered(counter), value, distribution);
+  }
+
   @Override
   public String toString() {
     return String.valueOf(value);
@@ -330,6 +429,132 @@ class IntData extends StructureElement {
   }
 }
 
+class LongData extends StructureElement {
+  final long value;
+  final LongDistribution distribution;
+
+  LongData(NodeId id, long value, LongDistribution distribution) {
+    super(id);
+    this.value = value;
+    this.distribution = distribution;
+  }
+
+  /** Shrinks the same way as {@link IntData}, with the distances computed as unsigned, so that they don't overflow */
+  @Nullable
+  @Override
+  ShrinkStep shrink() {
+    if (value == 0) return null;
+
+    return tryLong(getMinValue(), () -> null, this::tryNegation);
+  }
+
+  private long getMinValue() {
+    return Math.max(0, distribution.getMin());
+  }
+
+  private ShrinkStep tryNegation() {
+    if (value < 0 && value != Long.MIN_VALUE) {
+      return tryLong(-value, () -> divisionLoop(0, -value, 1), () -> divisionLoop(0, value, 1));
+    }
+    return divisionLoop(getMinValue(), value, 1);
+  }
+
+  /**
+   * Like {@link IntData}'s halving, but divides the distance to {@code bound} by 2<sup>shift</sup>, doubling the shift after each success
+   * and going back to halving after a failure, so that e.g. the bits of a double don't take one attempt per bit to shrink
+   */
+  private ShrinkStep divisionLoop(long bound, long failing, int shift) {
+    long distance = distance(bound, failing);
+    if (Long.compareUnsigned(distance, 1) <= 0) return null;
+    int actualShift = Math.min(shift, 63 - Long.numberOfLeadingZeros(distance));
+    long next = failing > bound ? bound + (distance >>> actualShift) : bound - (distance >>> actualShift);
+    return tryLong(next, () -> divisionLoop(bound, next, actualShift * 2), actualShift > 1 ? () -> divisionLoop(bound, failing, 1) : null);
+  }
+
+  /** @see IntData#shrinkToBoundary */
+  @Nullable
+  ShrinkStep shrinkToBoundary() {
+    long bound = value < 0 ? 0 : getMinValue();
+    return Long.compareUnsigned(distance(bound, value), 1) <= 0 ? null : tryNeighbor(middle(bound, value), value);
+  }
+
+  private ShrinkStep tryNeighbor(long bound, long failing) {
+    long neighbor = failing > bound ? failing - 1 : failing + 1;
+    return neighbor == bound ? null : tryLong(neighbor, () -> bisect(bound, neighbor), null);
+  }
+
+  private ShrinkStep bisect(long bound, long failing) {
+    if (Long.compareUnsigned(distance(bound, failing), 1) <= 0) return null;
+    long middle = middle(bound, failing);
+    return tryLong(middle, () -> bisect(bound, middle), () -> bisect(middle, failing));
+  }
+
+  /** @return the unsigned distance between the given values */
+  private static long distance(long bound, long failing) {
+    return failing > bound ? failing - bound : bound - failing;
+  }
+
+  private static long middle(long bound, long failing) {
+    long half = distance(bound, failing) >>> 1;
+    return failing > bound ? bound + half : bound - half;
+  }
+
+  private ShrinkStep tryLong(long value, @NotNull Supplier<ShrinkStep> success, @Nullable Supplier<ShrinkStep> fail) {
+    return distribution.isValidValue(value)
+            ? ShrinkStep.create(id, new LongData(id, value, distribution), __ -> success.get(), fail)
+            : fail == null ? null : fail.get();
+  }
+
+  @NotNull
+  @Override
+  LongData replace(NodeId id, StructureElement replacement) {
+    return this.id == id ? (LongData)replacement : this;
+  }
+
+  @Nullable
+  @Override
+  StructureElement findChildById(NodeId id) {
+    return id == this.id ? this : null;
+  }
+
+  @Override
+  void serialize(LongConsumer out) {
+    out.accept(value);
+  }
+
+  @Override
+  long fingerprint() {
+    return value;
+  }
+
+  @Override
+  StructureElement removeUnneeded(Set<NodeId> unneeded) {
+    return this;
+  }
+
+  @Override
+  LongData renumber(AtomicInteger counter) {
+    return new LongData(id.renumbered(counter), value, distribution);
+  }
+
+  @Override
+  public String toString() {
+    return value + "L";
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    return obj instanceof LongData && value == ((LongData)obj).value;
+  }
+
+  @Override
+  public int hashCode() {
+    return Long.hashCode(value);
+  }
+}
+
 enum StructureKind {
-  GENERIC, LIST, CHOICE
+  GENERIC, LIST, CHOICE,
+  /** The items of lazy collections, appended to the root in the order the property consumes them, see {@link AbstractDataStructure#generateLazyItem} */
+  STREAM
 }
\ No newline at end of file
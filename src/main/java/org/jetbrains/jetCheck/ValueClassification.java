@@ -0,0 +1,127 @@
+package org.jetbrains.jetCheck;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the labels given to the checked values via {@link GenerationEnvironment#classify}, to show how well the generators
+ * cover the interesting cases, and to check {@link PropertyChecker.Parameters#withCoverage coverage requirements}.
+ * The counters can be updated from several threads without locking.
+ */
+@SuppressWarnings("UseOfSystemOutOrSystemErr")
+class ValueClassification {
+  private static final String BUCKET_SEPARATOR = ": ";
+  private final Map<String, LongAdder> labelCounts = new ConcurrentHashMap<>();
+  private final LongAdder valueCount = new LongAdder();
+
+  /** Counts a checked value, and each of its distinct labels once */
+  void valueChecked(@NotNull Collection<String> labels) {
+    valueCount.increment();
+    for (String label : labels.size() > 1 ? new LinkedHashSet<>(labels) : labels) {
+      labelCounts.computeIfAbsent(label, __ -> new LongAdder()).increment();
+    }
+  }
+
+  boolean hasLabels() {
+    return !labelCounts.isEmpty();
+  }
+
+  /** @return the percentage of the checked values having the given label */
+  double getPercentage(@NotNull String label) {
+    long total = valueCount.sum();
+    LongAdder count = labelCounts.get(label);
+    return total == 0 || count == null ? 0 : count.sum() * 100.0 / total;
+  }
+
+  /** @return a description of the first requirement (label to minimal percentage) not met so far, or null if all of them are met */
+  @Nullable
+  String findUnsatisfiedRequirement(@NotNull Map<String, Double> requirements) {
+    for (Map.Entry<String, Double> entry : requirements.entrySet()) {
+      double actual = getPercentage(entry.getKey());
+      if (actual < entry.getValue()) {
+        return String.format(Locale.ROOT, "'%s' covers only %.1f%% of %d checked values, while %.1f%% is required",
+                             entry.getKey(), actual, valueCount.sum(), entry.getValue());
+      }
+    }
+    return null;
+  }
+
+  String getReport() {
+    List<String> labels = new ArrayList<>(labelCounts.keySet());
+    labels.sort(ValueClassification::compareLabels);
+    StringBuilder sb = new StringBuilder("Value classification (" + valueCount.sum() + " checked values):\n");
+    for (String label : labels) {
+      sb.append(String.format(Locale.ROOT, "%10d %7.1f%%  %s%n", labelCounts.get(label).sum(), getPercentage(label), label));
+    }
+    return sb.toString();
+  }
+
+  void printReport() {
+    System.out.print(getReport());
+  }
+
+  void writeTo(DataOutput out) throws IOException {
+    Map<String, Long> counts = new LinkedHashMap<>();
+    labelCounts.forEach((label, count) -> counts.put(label, count.sum()));
+    out.writeLong(valueCount.sum());
+    out.writeInt(counts.size());
+    for (Map.Entry<String, Long> entry : counts.entrySet()) {
+      out.writeUTF(entry.getKey());
+      out.writeLong(entry.getValue());
+    }
+  }
+
+  /** Adds the counts written by {@link #writeTo} */
+  void readFrom(DataInput in) throws IOException {
+    valueCount.add(in.readLong());
+    for (int i = in.readInt(); i > 0; i--) {
+      labelCounts.computeIfAbsent(in.readUTF(), __ -> new LongAdder()).add(in.readLong());
+    }
+  }
+
+  /** Sorts labels alphabetically, but the buckets produced by {@link #bucketLabel} of the same name by their numbers */
+  private static int compareLabels(String l1, String l2) {
+    int i1 = l1.lastIndexOf(BUCKET_SEPARATOR);
+    int i2 = l2.lastIndexOf(BUCKET_SEPARATOR);
+    if (i1 >= 0 && i2 >= 0 && l1.substring(0, i1).equals(l2.substring(0, i2))) {
+      Long b1 = parseBucketStart(l1.substring(i1 + BUCKET_SEPARATOR.length()));
+      Long b2 = parseBucketStart(l2.substring(i2 + BUCKET_SEPARATOR.length()));
+      if (b1 != null && b2 != null) return Long.compare(b1, b2);
+    }
+    return l1.compareTo(l2);
+  }
+
+  @Nullable
+  private static Long parseBucketStart(String bucket) {
+    int rangeStart = bucket.indexOf("..", 1);
+    try {
+      return Long.parseLong(rangeStart < 0 ? bucket : bucket.substring(0, rangeStart));
+    }
+    catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  /**
+   * @return a label of the form {@code "name: bucket"}, where the buckets are 0, 1, 2..3, 4..7, 8..15 and so on,
+   * and similarly for negative values
+   */
+  static String bucketLabel(@NotNull String name, int value) {
+    return name + BUCKET_SEPARATOR + bucket(value);
+  }
+
+  private static String bucket(int value) {
+    if (value == 0 || value == 1 || value == -1) return String.valueOf(value);
+    long abs = Math.abs((long)value);
+    long low = Long.highestOneBit(abs);
+    long high = low * 2 - 1;
+    return value > 0 ? low + ".." + high : -high + ".." + -low;
+  }
+}
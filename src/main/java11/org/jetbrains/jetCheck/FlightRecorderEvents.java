@@ -0,0 +1,144 @@
+package org.jetbrains.jetCheck;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The Java 11+ version of the Flight Recorder hooks, packaged into {@code META-INF/versions/11} of the multi-release jar.
+ * Events are only created when enabled in the current recording. Generator calls are recorded only up to the nesting depth
+ * given by {@code jetCheck.jfr.generationDepth} system property (1 by default, i.e. the generators invoked
+ * directly by the top-level one), because deeper calls are usually too numerous and short to be worth the overhead.
+ */
+final class FlightRecorderEvents {
+  private static final int MAX_GENERATION_DEPTH = Integer.getInteger("jetCheck.jfr.generationDepth", 1);
+
+  private FlightRecorderEvents() {}
+
+  @Nullable
+  static Object beginIteration() {
+    return begin(new IterationEvent());
+  }
+
+  static void commitIteration(@Nullable Object event, Iteration<?> iteration, @Nullable StructureNode data, boolean failed) {
+    if (event instanceof IterationEvent) {
+      IterationEvent e = (IterationEvent)event;
+      e.iteration = iteration.iterationNumber;
+      e.sizeHint = iteration.sizeHint;
+      e.seed = iteration.iterationSeed;
+      e.nodeCount = data == null ? 0 : countNodes(data);
+      e.failed = failed;
+      e.commit();
+    }
+  }
+
+  @Nullable
+  static Object beginGeneration(int depth) {
+    return depth <= MAX_GENERATION_DEPTH ? begin(new GenerationEvent()) : null;
+  }
+
+  static void commitGeneration(@Nullable Object event, Generator<?> generator, int depth, StructureNode data) {
+    if (event instanceof GenerationEvent) {
+      GenerationEvent e = (GenerationEvent)event;
+      e.generator = generator.toString();
+      e.depth = depth;
+      e.nodeCount = countNodes(data);
+      e.commit();
+    }
+  }
+
+  @Nullable
+  static Object beginPropertyCheck() {
+    return begin(new PropertyCheckEvent());
+  }
+
+  static void commitPropertyCheck(@Nullable Object event, Iteration<?> iteration, StructureNode data, boolean failed) {
+    if (event instanceof PropertyCheckEvent) {
+      PropertyCheckEvent e = (PropertyCheckEvent)event;
+      e.iteration = iteration.iterationNumber;
+      e.sizeHint = iteration.sizeHint;
+      e.nodeCount = countNodes(data);
+      e.failed = failed;
+      e.commit();
+    }
+  }
+
+  @Nullable
+  static Object beginShrinkStep() {
+    return begin(new ShrinkStepEvent());
+  }
+
+  static void commitShrinkStep(@Nullable Object event, Iteration<?> iteration, StructureNode data, int attempt, boolean accepted) {
+    if (event instanceof ShrinkStepEvent) {
+      ShrinkStepEvent e = (ShrinkStepEvent)event;
+      e.iteration = iteration.iterationNumber;
+      e.attempt = attempt;
+      e.nodeCount = countNodes(data);
+      e.accepted = accepted;
+      e.commit();
+    }
+  }
+
+  @Nullable
+  private static Event begin(Event event) {
+    if (!event.isEnabled()) return null;
+    event.begin();
+    return event;
+  }
+
+  private static int countNodes(StructureElement element) {
+    if (!(element instanceof StructureNode)) return 1;
+    int count = 1;
+    for (StructureElement child : ((StructureNode)element).children) {
+      count += countNodes(child);
+    }
+    return count;
+  }
+
+  @Name("org.jetbrains.jetCheck.Iteration")
+  @Label("Iteration")
+  @Description("Generating a value and checking the property on it, excluding shrinking")
+  @Category("jetCheck")
+  static class IterationEvent extends Event {
+    @Label("Iteration") int iteration;
+    @Label("Size Hint") int sizeHint;
+    @Label("Seed") long seed;
+    @Label("Node Count") int nodeCount;
+    @Label("Failed") boolean failed;
+  }
+
+  @Name("org.jetbrains.jetCheck.Generation")
+  @Label("Generation")
+  @Description("Running a nested generator")
+  @Category("jetCheck")
+  static class GenerationEvent extends Event {
+    @Label("Generator") String generator;
+    @Label("Depth") int depth;
+    @Label("Node Count") int nodeCount;
+  }
+
+  @Name("org.jetbrains.jetCheck.PropertyCheck")
+  @Label("Property Check")
+  @Description("Checking the property on a generated or shrunk value")
+  @Category("jetCheck")
+  static class PropertyCheckEvent extends Event {
+    @Label("Iteration") int iteration;
+    @Label("Size Hint") int sizeHint;
+    @Label("Node Count") int nodeCount;
+    @Label("Failed") boolean failed;
+  }
+
+  @Name("org.jetbrains.jetCheck.ShrinkStep")
+  @Label("Shrink Step")
+  @Description("Replaying the generator on shrunk data and checking the property on the result")
+  @Category("jetCheck")
+  static class ShrinkStepEvent extends Event {
+    @Label("Iteration") int iteration;
+    @Label("Attempt") int attempt;
+    @Label("Node Count") int nodeCount;
+    @Label("Accepted") boolean accepted;
+  }
+}
@@ -0,0 +1,43 @@
+package org.jetbrains.jetCheck;
+
+import java.util.Arrays;
+
+import static org.jetbrains.jetCheck.Generator.*;
+
+public class ArrayGeneratorTest extends PropertyCheckerTestCase {
+
+  public void testByteArrayShrinksToSingleElement() {
+    assertEquals("[42]", checkGeneratesExample(byteArrays().map(Arrays::toString), s -> s.matches(".*[\\[ ]42[,\\]].*"), 5));
+  }
+
+  public void testLargeByteArrayIsZeroedExceptNeededByte() {
+    PropertyFalsified e = checkFails(STABLE, byteArrays(64 * 1024, 64 * 1024), a -> a[1000] == 0);
+    byte[] example = (byte[])e.getBreakingValue();
+    assertEquals(64 * 1024, example.length);
+    for (int i = 0; i < example.length; i++) {
+      if (i != 1000) assertEquals(String.valueOf(i), 0, example[i]);
+    }
+  }
+
+  public void testIntArraysKeepElementsInDistribution() {
+    int[] example = (int[])checkFails(STABLE, intArrays(IntDistribution.uniform(5, 10), 0, 20), a -> a.length < 3).getBreakingValue();
+    assertEquals(3, example.length);
+    assertTrue(Arrays.stream(example).allMatch(i -> i >= 5 && i <= 10));
+  }
+
+  public void testLongArrayShrinking() {
+    long[] example = (long[])checkFails(STABLE, longArrays(LongDistribution.uniform(-100, 100), 0, 50),
+                                        a -> Arrays.stream(a).allMatch(l -> l <= 50)).getBreakingValue();
+    assertEquals(1, example.length);
+    assertTrue(example[0] > 50);
+  }
+
+  public void testRecheckingArrayFromSerializedData() {
+    Generator<int[]> gen = intArrays(IntDistribution.uniform(-1000, 1000), 0, 100);
+    PropertyFailure.CounterExample<?> example =
+      checkFails(STABLE, gen, a -> Arrays.stream(a).sum() < 1000).getFailure().getMinimalCounterexample();
+    int[] rechecked = (int[])checkFails(PropertyChecker.customized().rechecking(example.getSerializedData()), gen, a -> false).getBreakingValue();
+    assertTrue(Arrays.equals((int[])example.getExampleValue(), rechecked));
+  }
+
+}
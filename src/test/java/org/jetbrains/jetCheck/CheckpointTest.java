@@ -0,0 +1,138 @@
+package org.jetbrains.jetCheck;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.jetbrains.jetCheck.Generator.*;
+
+public class CheckpointTest extends PropertyCheckerTestCase {
+  private Path dir;
+  private Path file;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    dir = Files.createTempDirectory("checkpoints");
+    file = dir.resolve("check.state");
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    try (Stream<Path> files = Files.list(dir)) {
+      for (Path file : (Iterable<Path>)files::iterator) {
+        Files.delete(file);
+      }
+    }
+    Files.delete(dir);
+    super.tearDown();
+  }
+
+  public void testResumedCheckContinuesFromSavedIteration() {
+    int[] generated = {0};
+    Generator<List<Integer>> gen = from(data -> {
+      if (++generated[0] == 12) throw new IllegalStateException("interrupted");
+      return data.generate(listsOf(integers(0, 1000)));
+    });
+    List<List<Integer>> expected = new ArrayList<>();
+    generated[0] = 100;
+    STABLE.silent().withIterationCount(30).forAll(gen, expected::add);
+
+    PropertyChecker.Parameters parameters = STABLE.silent().withIterationCount(30).withCheckpoints(file, Duration.ZERO).resumeFrom(file);
+    List<List<Integer>> checked = new ArrayList<>();
+    generated[0] = 0;
+    try {
+      parameters.forAll(gen, checked::add);
+      fail();
+    }
+    catch (GeneratorException e) {
+      assertTrue(Files.exists(file));
+    }
+    assertFalse(checked.isEmpty());
+
+    parameters.forAll(gen, checked::add);
+    assertEquals(expected, checked);
+    assertFalse(Files.exists(file));
+  }
+
+  public void testStatisticsSurviveResuming() throws IOException {
+    Generator<Integer> gen = integers(0, 999).suchThat(i -> i % 2 == 0);
+    int[] generated = {0};
+    try {
+      STABLE.silent().withIterationCount(30).withCheckpoints(file, Duration.ZERO).forAll(from(data -> {
+        if (++generated[0] == 20) throw new IllegalStateException("interrupted");
+        int value = data.generate(gen);
+        data.classify(value < 500 ? "small" : "large");
+        return value;
+      }), i -> true);
+      fail();
+    }
+    catch (GeneratorException ignored) {
+    }
+
+    Checkpoint checkpoint = Checkpoint.load(file);
+    assertEquals(20, checkpoint.iterationNumber);
+    assertEquals(19, checkpoint.statistics.getConditionStats().get(0).accepted);
+    assertEquals(100.0, checkpoint.classification.getPercentage("small") + checkpoint.classification.getPercentage("large"), 1e-9);
+    assertEquals(19, checkpoint.fingerprints.length);
+  }
+
+  public void testShrinkingIsResumedFromSmallestCounterExample() throws IOException {
+    Generator<List<Integer>> gen = listsOf(integers(0, 100));
+    PropertyFalsified expected = checkFails(STABLE, gen, l -> !l.contains(42));
+
+    Path snapshot = saveShrinkingSnapshot(gen);
+    Checkpoint checkpoint = Checkpoint.load(snapshot);
+    assertNotNull(checkpoint.shrinking);
+
+    PropertyFalsified resumed = checkFails(STABLE.resumeFrom(snapshot), gen, l -> !l.contains(42));
+    assertEquals(Collections.singletonList(42), resumed.getFailure().getMinimalCounterexample().getExampleValue());
+    assertEquals(expected.getFailure().getIterationNumber(), resumed.getFailure().getIterationNumber());
+    assertTrue(resumed.getFailure().getTotalShrinkingExampleCount() >= checkpoint.shrinking.totalSteps);
+  }
+
+  private Path saveShrinkingSnapshot(Generator<List<Integer>> gen) {
+    Path snapshot = dir.resolve("snapshot");
+    int[] checks = {0};
+    checkFails(STABLE.withCheckpoints(file, Duration.ZERO), gen, l -> {
+      if (l.contains(42) && ++checks[0] == 5) {
+        copy(file, snapshot);
+      }
+      return !l.contains(42);
+    });
+    assertFalse(Files.exists(file));
+    assertTrue(Files.exists(snapshot));
+    return snapshot;
+  }
+
+  public void testChangedGeneratorRepeatsShrunkIteration() throws IOException {
+    Path snapshot = saveShrinkingSnapshot(listsOf(integers(0, 100)));
+    Checkpoint checkpoint = Checkpoint.load(snapshot);
+    assertNotNull(checkpoint.shrinking);
+
+    int[] checks = {0};
+    STABLE.silent().withIterationCount(100).resumeFrom(snapshot).forAll(listsOf(integers(500, 600)), l -> ++checks[0] > 0);
+    assertEquals(100 - checkpoint.iterationNumber + 1, checks[0]);
+  }
+
+  private static void copy(Path from, Path to) {
+    try {
+      Files.copy(from, to, StandardCopyOption.REPLACE_EXISTING);
+    }
+    catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  public void testMissingCheckpointStartsFromScratch() {
+    int[] iterations = {0};
+    STABLE.silent().withIterationCount(10).resumeFrom(file).forAll(integers(), i -> ++iterations[0] > 0);
+    assertEquals(10, iterations[0]);
+  }
+}
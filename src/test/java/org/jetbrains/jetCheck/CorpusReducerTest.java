@@ -0,0 +1,122 @@
+package org.jetbrains.jetCheck;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+import static org.jetbrains.jetCheck.Generator.*;
+
+public class CorpusReducerTest extends PropertyCheckerTestCase {
+  private Path dir;
+  private Corpus source;
+  private Corpus target;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    dir = Files.createTempDirectory("corpus");
+    source = Corpus.open(dir.resolve("source"));
+    target = Corpus.open(dir.resolve("target"));
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    source.close();
+    target.close();
+    try (Stream<Path> files = Files.walk(dir)) {
+      for (Path file : (Iterable<Path>)files.sorted((p1, p2) -> p2.compareTo(p1))::iterator) {
+        Files.delete(file);
+      }
+    }
+    super.tearDown();
+  }
+
+  private <T> void fillSource(Generator<T> gen, Predicate<T> property) {
+    for (int seed = 0; seed < 20; seed++) {
+      @SuppressWarnings("deprecation")
+      PropertyChecker.Parameters parameters = PropertyChecker.customized().silent().withSeed(seed);
+      try {
+        parameters.forAll(gen, property);
+      }
+      catch (PropertyFalsified e) {
+        source.add(e.getFailure().getMinimalCounterexample());
+      }
+    }
+  }
+
+  private <T> List<T> replayTarget(Generator<T> gen) {
+    List<T> values = new ArrayList<>();
+    STABLE.silent().withCorpus(target).withIterationCount(target.size()).forAll(gen, values::add);
+    return values;
+  }
+
+  public void testEntriesWithSameOutcomeAreMerged() {
+    Generator<Integer> gen = integers(0, 1000).noShrink();
+    fillSource(gen, i -> i < 900);
+    assertTrue(source.size() > 2);
+
+    assertEquals(1, CorpusReducer.forProperty(gen, i -> i < 900).reduce(source, target));
+    assertEquals(1, target.size());
+  }
+
+  public void testExceptionsAreDistinguished() {
+    Generator<Integer> gen = integers(0, 1000).noShrink();
+    fillSource(gen, i -> i < 900);
+
+    int kept = CorpusReducer.forProperty(gen, i -> {
+      if (i >= 900) {
+        if (i % 2 == 0) throw new IllegalStateException();
+        throw new IllegalArgumentException();
+      }
+      return true;
+    }).reduce(source, target);
+    assertEquals(2, kept);
+    List<Integer> values = replayTarget(gen);
+    assertEquals(1, values.stream().filter(i -> i % 2 == 0).count());
+  }
+
+  public void testUserSignatureAndClassification() throws IOException {
+    Generator<Integer> gen = from(data -> {
+      int i = data.generate(integers(0, 1000).noShrink());
+      data.classify(i % 3 == 0 ? "divisible" : "not divisible");
+      return i;
+    });
+    fillSource(gen, i -> i < 900);
+
+    assertEquals(2, CorpusReducer.forProperty(gen, i -> true).reduce(source, target));
+    target.close();
+    target = Corpus.open(dir.resolve("target2"));
+    assertEquals(4, CorpusReducer.forProperty(gen, i -> true).withSignature(i -> i % 2).reduce(source, target));
+  }
+
+  public void testSmallestEntryIsKept() {
+    Generator<List<Integer>> gen = listsOf(integers(0, 1000)).noShrink();
+    fillSource(gen, l -> l.stream().allMatch(i -> i < 900));
+    List<List<Integer>> sourceValues = new ArrayList<>();
+    STABLE.silent().withCorpus(source).withIterationCount(source.size()).forAll(gen, sourceValues::add);
+    int minSize = sourceValues.stream().mapToInt(List::size).min().getAsInt();
+    assertTrue(sourceValues.stream().anyMatch(l -> l.size() > minSize));
+
+    assertEquals(1, CorpusReducer.forProperty(gen, l -> l.stream().allMatch(i -> i < 900)).reduce(source, target));
+    assertEquals(minSize, replayTarget(gen).get(0).size());
+  }
+
+  public void testEntriesFailingToReplayAreDropped() {
+    Generator<Integer> gen = integers(0, 1000).noShrink();
+    fillSource(gen, i -> i < 900);
+    List<Integer> sourceValues = new ArrayList<>();
+    STABLE.silent().withCorpus(source).withIterationCount(source.size()).forAll(gen, sourceValues::add);
+    assertTrue(sourceValues.stream().anyMatch(i -> i % 2 == 0));
+
+    Generator<Integer> throwing = gen.map(i -> {
+      if (i % 2 == 0) throw new IllegalStateException("changed generator");
+      return i;
+    });
+    assertEquals(1, CorpusReducer.forProperty(throwing, i -> i < 900).reduce(source, target));
+    assertEquals(1, replayTarget(gen).get(0) % 2);
+  }
+}
@@ -0,0 +1,142 @@
+package org.jetbrains.jetCheck;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.jetbrains.jetCheck.Generator.*;
+
+public class CorpusTest extends PropertyCheckerTestCase {
+  private Path dir;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    dir = Files.createTempDirectory("corpus");
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    try (Stream<Path> files = Files.list(dir)) {
+      for (Path file : (Iterable<Path>)files::iterator) {
+        Files.delete(file);
+      }
+    }
+    Files.delete(dir);
+    super.tearDown();
+  }
+
+  public void testEntriesSurviveReopening() throws IOException {
+    int count = 5_000;
+    try (Corpus corpus = Corpus.open(dir)) {
+      for (int i = 0; i < count; i++) {
+        assertEquals(i, corpus.add(ByteBuffer.wrap(entryBytes(i))));
+      }
+    }
+    try (Corpus corpus = Corpus.open(dir)) {
+      assertEquals(count, corpus.size());
+      for (int i = 0; i < count; i += 7) {
+        ByteBuffer entry = corpus.getEntry(i);
+        assertTrue(entry.isReadOnly());
+        assertEquals(ByteBuffer.wrap(entryBytes(i)), entry);
+      }
+    }
+  }
+
+  public void testForeignIndexIsRejected() throws IOException {
+    Files.write(dir.resolve("index.bin"), new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 0, 0, 0, 0});
+    try {
+      Corpus.open(dir).close();
+      fail();
+    }
+    catch (IOException expected) {
+    }
+  }
+
+  private static byte[] entryBytes(int i) {
+    byte[] bytes = new byte[i % 50 + 1];
+    bytes[0] = (byte)i;
+    bytes[bytes.length - 1] = (byte)(i >> 8);
+    return bytes;
+  }
+
+  public void testCounterExamplesAreReplayedFirst() throws IOException {
+    Generator<List<Integer>> gen = listsOf(integers(0, 1000));
+    try (Corpus corpus = Corpus.open(dir)) {
+      PropertyFalsified e = checkFails(STABLE.withCorpus(corpus), gen, l -> !l.contains(42));
+      assertEquals(1, corpus.size());
+
+      checkFails(STABLE.withCorpus(corpus), gen, l -> !l.contains(42));
+      assertEquals(1, corpus.size());
+      assertEquals(e.getFailure().getMinimalCounterexample().getExampleValue(), Collections.singletonList(42));
+    }
+
+    try (Corpus corpus = Corpus.open(dir)) {
+      @SuppressWarnings("deprecation")
+      PropertyChecker.Parameters parameters = PropertyChecker.customized().withSeed(1).withIterationCount(1).withCorpus(corpus);
+      PropertyFalsified e = checkFails(parameters, gen, l -> !l.contains(42));
+      assertEquals(1, e.getFailure().getIterationNumber());
+      assertEquals(e.getFailure().getFirstCounterExample().getExampleValue(), Collections.singletonList(42));
+      assertEquals(1, corpus.size());
+    }
+  }
+
+  public void testGlobalSeedDeterminesIterationsAfterCorpus() throws IOException {
+    try (Corpus corpus = Corpus.open(dir)) {
+      checkFails(STABLE.withCorpus(corpus), integers(0, 1_000_000), i -> i < 10);
+      assertEquals(1, corpus.size());
+
+      List<Integer> values42 = checkedValues(corpus, 42);
+      assertEquals(Integer.valueOf(10), values42.get(0));
+      assertEquals(values42, checkedValues(corpus, 42));
+      assertFalse(values42.subList(1, 5).equals(checkedValues(corpus, 4242).subList(1, 5)));
+    }
+  }
+
+  private static List<Integer> checkedValues(Corpus corpus, long seed) {
+    List<Integer> values = new ArrayList<>();
+    @SuppressWarnings("deprecation")
+    PropertyChecker.Parameters parameters = PropertyChecker.customized().silent().withSeed(seed).withCorpus(corpus).withIterationCount(5);
+    parameters.forAll(integers(0, 1_000_000), values::add);
+    return values;
+  }
+
+  public void testNewestEntriesAreReplayedInLargeCorpus() throws IOException {
+    Generator<Integer> gen = integers(0, 1000);
+    try (Corpus corpus = Corpus.open(dir)) {
+      for (int seed = 0; corpus.size() < 20; seed++) {
+        @SuppressWarnings("deprecation")
+        PropertyChecker.Parameters parameters = PropertyChecker.customized().silent().withSeed(seed);
+        try {
+          parameters.forAll(gen.noShrink(), i -> i < 500);
+        }
+        catch (PropertyFalsified e) {
+          corpus.add(e.getFailure().getMinimalCounterexample());
+        }
+      }
+      corpus.add(checkFails(STABLE, gen, i -> i < 42).getFailure().getMinimalCounterexample());
+
+      PropertyFalsified e = checkFails(STABLE.withCorpus(corpus).withIterationCount(5), gen, i -> i != 42);
+      assertEquals(1, e.getFailure().getIterationNumber());
+    }
+  }
+
+  public void testRandomDataIsUsedAfterEntryEnds() throws IOException {
+    try (Corpus corpus = Corpus.open(dir)) {
+      checkFails(STABLE.withCorpus(corpus), integers(0, 1000), i -> i < 900);
+      assertEquals(1, corpus.size());
+
+      int[] iterations = {0};
+      STABLE.silent().withCorpus(corpus).withIterationCount(3).forAll(listsOf(integers(0, 1000)), l -> {
+        iterations[0]++;
+        return true;
+      });
+      assertEquals(3, iterations[0]);
+    }
+  }
+}
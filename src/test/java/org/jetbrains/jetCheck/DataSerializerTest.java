@@ -0,0 +1,85 @@
+package org.jetbrains.jetCheck;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.function.Predicate;
+
+import static org.jetbrains.jetCheck.Generator.*;
+
+@SuppressWarnings("deprecation")
+public class DataSerializerTest extends PropertyCheckerTestCase {
+
+  public void testFirstFormatIsStillReadable() {
+    PropertyFalsified e = checkFails(PropertyChecker.customized().rechecking("+/uO5x/L6LKECgEA"), integers(), i -> i == 42);
+    assertEquals(0, e.getFailure().getMinimalCounterexample().getExampleValue());
+  }
+
+  public void testSerializedDataHasVersionPrefix() {
+    PropertyFalsified e = checkFails(STABLE, integers(), i -> i == 42);
+    String data = e.getFailure().getMinimalCounterexample().getSerializedData();
+    assertTrue(data, data.startsWith(DataSerializer.V2_PREFIX));
+  }
+
+  public void testLargeRepetitiveDataIsCompressed() {
+    Generator<List<Integer>> gen = listsOf(IntDistribution.uniform(5000, 5000), integers(0, 3));
+    Predicate<List<Integer>> property = l -> l.size() < 5000;
+    PropertyFailure.CounterExample<?> example = checkFails(STABLE, gen.noShrink(), property).getFailure().getMinimalCounterexample();
+
+    String data = example.getSerializedData();
+    assertTrue(String.valueOf(data.length()), data.length() < 2500);
+    assertEquals(example.getExampleValue(),
+                 checkFails(PropertyChecker.customized().rechecking(data), gen, property).getFailure().getMinimalCounterexample().getExampleValue());
+  }
+
+  public void testNegativeNumbersRoundTrip() {
+    Generator<List<Integer>> gen = listsOf(integers());
+    PropertyFailure.CounterExample<?> example =
+      checkFails(STABLE, gen.noShrink(), l -> l.size() < 5 || !l.contains(-1) && l.stream().allMatch(i -> i > -10))
+        .getFailure().getMinimalCounterexample();
+    PropertyFalsified recheck = checkFails(PropertyChecker.customized().rechecking(example.getSerializedData()), gen, l -> false);
+    assertEquals(example.getExampleValue(), recheck.getFailure().getMinimalCounterexample().getExampleValue());
+  }
+
+  public void testBinaryStreamIsReadLazily() throws IOException {
+    Generator<List<String>> gen = listsOf(asciiIdentifiers());
+    PropertyFailure.CounterExample<?> example = checkFails(STABLE, gen, l -> l.size() < 3).getFailure().getMinimalCounterexample();
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    example.writeSerializedData(bytes);
+    for (int i = 0; i < 10; i++) {
+      bytes.write(0xFF);
+    }
+    InputStream stream = new ByteArrayInputStream(bytes.toByteArray());
+    PropertyFalsified recheck = checkFails(PropertyChecker.customized().rechecking(stream), gen, l -> l.size() < 3);
+    assertEquals(example.getExampleValue(), recheck.getFailure().getMinimalCounterexample().getExampleValue());
+    assertTrue(stream.available() > 0);
+  }
+
+  public void testChangedGeneratorIsDetected() {
+    PropertyFalsified e = checkFails(STABLE, listsOf(integers(0, 100)), l -> l.size() < 2);
+    String data = e.getFailure().getMinimalCounterexample().getSerializedData();
+    Generator<List<Integer>> changed = from(d -> {
+      List<Integer> list = d.generate(listsOf(integers(0, 100)));
+      d.generate(integers(0, 100));
+      return list;
+    });
+    try {
+      PropertyChecker.customized().silent().rechecking(data).forAll(changed, l -> l.size() < 2);
+      fail();
+    }
+    catch (CannotRestoreValue expected) {
+    }
+  }
+
+  public void testUnknownVersionIsRejected() {
+    try {
+      PropertyChecker.customized().rechecking(new ByteArrayInputStream(new byte[]{3, 0, 0, 0, 0, 0}));
+      fail();
+    }
+    catch (IllegalArgumentException expected) {
+    }
+  }
+}
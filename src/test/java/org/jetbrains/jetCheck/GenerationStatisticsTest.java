@@ -0,0 +1,94 @@
+package org.jetbrains.jetCheck;
+
+import java.io.*;
+import java.util.List;
+import java.util.Random;
+
+import static org.jetbrains.jetCheck.Generator.*;
+
+public class GenerationStatisticsTest extends PropertyCheckerTestCase {
+
+  public void testConditionAttemptsAreCounted() {
+    GenerationStatistics statistics = new GenerationStatistics();
+    Random random = new Random(0);
+    GenerativeDataStructure data =
+      new GenerativeDataStructure(d -> d.generateInt(random), new StructureNode(new NodeId()), 10, 100, null, statistics);
+    data.generate(listsOf(IntDistribution.uniform(50, 50), integers(0, 3).named("small").suchThat(i -> i == 0)));
+
+    List<GenerationStatistics.ConditionStats> stats = statistics.getConditionStats();
+    assertEquals(1, stats.size());
+    GenerationStatistics.ConditionStats condition = stats.get(0);
+    assertEquals(50, condition.accepted);
+    assertTrue(condition.attempts > 100);
+    assertTrue(condition.name, condition.name.endsWith("on small"));
+    assertTrue(statistics.getReport(), statistics.getReport().contains(condition.name));
+  }
+
+  public void testRestoredConditionsAreMergedWithLiveOnes() throws IOException {
+    GenerationStatistics original = new GenerationStatistics();
+    generateMultiples(original, 2);
+    GenerationStatistics.ConditionStats originalStats = original.getConditionStats().get(0);
+    assertEquals("suchThat(lambda in " + getClass().getName() + ") on small", originalStats.name);
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    original.writeTo(new DataOutputStream(bytes));
+    GenerationStatistics resumed = new GenerationStatistics();
+    resumed.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+    generateMultiples(resumed, 2);
+    generateMultiples(resumed, 3);
+
+    List<GenerationStatistics.ConditionStats> stats = resumed.getConditionStats();
+    assertEquals(2, stats.size());
+    GenerationStatistics.ConditionStats merged = stats.stream().filter(c -> c.name.equals(originalStats.name)).findFirst().get();
+    assertEquals(2 * originalStats.attempts, merged.attempts);
+    assertTrue(stats.stream().anyMatch(c -> c.name.equals(originalStats.name + " #2")));
+  }
+
+  private static void generateMultiples(GenerationStatistics statistics, int divisor) {
+    Random random = new Random(0);
+    GenerativeDataStructure data =
+      new GenerativeDataStructure(d -> d.generateInt(random), new StructureNode(new NodeId()), 10, 100, null, statistics);
+    data.generate(listsOf(IntDistribution.uniform(20, 20), integers(0, 9).named("small").suchThat(i -> i % divisor == 0)));
+  }
+
+  public void testExcessiveRejectionFailsTheCheck() {
+    try {
+      STABLE.silent().withMaxRejectionRate(0.5).withIterationCount(10).forAll(integers(0, 999).suchThat(i -> i % 10 == 0), i -> true);
+      fail();
+    }
+    catch (RejectionRateExceeded e) {
+      assertTrue(e.getMessage(), e.getMessage().contains("rejected by suchThat"));
+    }
+  }
+
+  public void testModerateRejectionIsAllowed() {
+    STABLE.silent().withMaxRejectionRate(0.5).forAll(integers(0, 999).suchThat(i -> i % 10 != 0), i -> true);
+  }
+
+  public void testPropertyFailureTakesPrecedence() {
+    checkFails(STABLE.withMaxRejectionRate(0), integers(0, 9).suchThat(i -> i == 0), i -> i != 0);
+  }
+
+  public void testDiscardedValuesAreJudgedWhenFrequentEnough() {
+    GenerationStatistics statistics = new GenerationStatistics();
+    for (int i = 0; i < GenerationStatistics.MIN_ATTEMPTS_TO_CHECK_RATE - 1; i++) {
+      statistics.valueGenerated();
+      statistics.duplicateGenerated();
+    }
+    assertNull(statistics.findExcessiveRejection(0.5));
+
+    statistics.conditionNotSatisfied();
+    assertEquals(1.0, statistics.getDiscardRate());
+    assertNotNull(statistics.findExcessiveRejection(0.5));
+    assertNull(statistics.findExcessiveRejection(1));
+  }
+
+  public void testInvalidRate() {
+    try {
+      PropertyChecker.customized().withMaxRejectionRate(1.5);
+      fail();
+    }
+    catch (IllegalArgumentException expected) {
+    }
+  }
+}
@@ -0,0 +1,68 @@
+package org.jetbrains.jetCheck;
+
+import junit.framework.TestCase;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.jetbrains.jetCheck.Generator.*;
+
+public class GeneratorProfilerTest extends TestCase {
+
+  public void testTimeIsAttributedToNamedGenerators() {
+    Generator<Integer> slow = from(data -> {
+      sleep();
+      return data.generate(integers(0, 10).named("digit"));
+    }).named("slow");
+    Generator<List<Integer>> lists = listsOf(IntDistribution.uniform(5, 5), slow).named("lists");
+
+    GeneratorProfiler profiler = new GeneratorProfiler(10);
+    Random random = new Random(0);
+    GenerativeDataStructure data = new GenerativeDataStructure(d -> d.generateInt(random), new StructureNode(new NodeId()), 10, 100, profiler, null);
+    data.generate(lists);
+
+    List<GeneratorProfiler.Stats> report = profiler.getReport();
+    assertEquals("slow", report.get(0).name);
+    GeneratorProfiler.Stats slowStats = report.get(0);
+    assertEquals(5, slowStats.calls);
+    assertTrue(slowStats.selfNanos >= 5_000_000);
+    assertTrue(slowStats.selfNanos <= slowStats.totalNanos);
+
+    GeneratorProfiler.Stats listStats = find(report, "lists");
+    assertEquals(1, listStats.calls);
+    assertTrue(listStats.totalNanos >= slowStats.totalNanos);
+    assertTrue(listStats.selfNanos < slowStats.selfNanos);
+
+    assertEquals(5, find(report, "digit").calls);
+  }
+
+  public void testReportSizeIsLimited() {
+    GeneratorProfiler profiler = new GeneratorProfiler(1);
+    Random random = new Random(0);
+    GenerativeDataStructure data = new GenerativeDataStructure(d -> d.generateInt(random), new StructureNode(new NodeId()), 10, 100, profiler, null);
+    data.generate(zipWith(integers().named("a"), integers().named("b"), Integer::sum));
+    assertEquals(1, profiler.getReport().size());
+  }
+
+  public void testProfilingIsIncompatibleWithSilentMode() {
+    try {
+      PropertyChecker.customized().silent().profileGenerators(10);
+      fail();
+    }
+    catch (IllegalStateException expected) {
+    }
+  }
+
+  private static GeneratorProfiler.Stats find(List<GeneratorProfiler.Stats> report, String name) {
+    return report.stream().filter(s -> s.name.equals(name)).findFirst().orElseThrow(AssertionError::new);
+  }
+
+  private static void sleep() {
+    try {
+      Thread.sleep(1);
+    }
+    catch (InterruptedException e) {
+      throw new RuntimeException(e);
+    }
+  }
+}
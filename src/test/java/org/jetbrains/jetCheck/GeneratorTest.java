@@ -36,11 +36,11 @@ public class GeneratorTest extends PropertyCheckerTestCase {
   public void testStringContains() {
     assertEquals("a", checkGeneratesExample(stringsOf(asciiPrintableChars()),
                                             s -> s.contains("a"),
-                                            8));
+                                            9));
 
     String aWithB = checkGeneratesExample(stringsOf(IntDistribution.uniform(2, 100), asciiPrintableChars()),
                                      s -> s.contains("a") && s.contains("b"),
-                                     33);
+                                     35);
     assertTrue(aWithB, "ab".equals(aWithB) || "ba".equals(aWithB));
   }
 
@@ -66,7 +66,7 @@ public class GeneratorTest extends PropertyCheckerTestCase {
   public void testSortedDoublesNonDescending() {
     PropertyFailure<List<Double>> failure = checkFalsified(listsOf(doubles()),
                                                            l -> isSorted(l.stream().sorted().collect(Collectors.toList())),
-                                                           35);
+                                                           22);
     assertEquals(2, failure.getMinimalCounterexample().getExampleValue().size());
   }
 
@@ -118,9 +118,9 @@ public class GeneratorTest extends PropertyCheckerTestCase {
   public void testAsciiIdentifier() {
     PropertyChecker.forAll(asciiIdentifiers(), 
                            s -> Character.isJavaIdentifierStart(s.charAt(0)) && s.chars().allMatch(Character::isJavaIdentifierPart));
-    checkGeneratesExample(asciiIdentifiers(),
-                          s -> s.contains("_"),
-                          10);
+    assertEquals("A_", checkGeneratesExample(asciiIdentifiers(),
+                                            s -> s.contains("_"),
+                                            13));
   }
 
   public void testBoolean() {
@@ -182,7 +182,7 @@ public class GeneratorTest extends PropertyCheckerTestCase {
     PropertyFailure<List<Integer>> failure = checkFalsified(listsOf(integers(0, 100)), l -> {
       log.add(l);
       return !l.contains(42);
-    }, 12);
+    }, 13);
     List<Integer> goldMin = Collections.singletonList(42);
 
     PropertyFailure.CounterExample<List<Integer>> first = failure.getFirstCounterExample();
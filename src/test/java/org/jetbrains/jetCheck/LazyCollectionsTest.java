@@ -0,0 +1,72 @@
+package org.jetbrains.jetCheck;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import static org.jetbrains.jetCheck.Generator.*;
+
+public class LazyCollectionsTest extends PropertyCheckerTestCase {
+  private final List<Integer> consumed = new ArrayList<>();
+
+  private Predicate<Iterator<Integer>> allConsumedAre(Predicate<Integer> condition) {
+    return it -> {
+      consumed.clear();
+      while (it.hasNext()) {
+        Integer item = it.next();
+        consumed.add(item);
+        if (!condition.test(item)) return false;
+      }
+      return true;
+    };
+  }
+
+  public void testOnlyConsumedItemsAreRecorded() {
+    PropertyFalsified e = checkFails(STABLE, iteratorsOf(IntDistribution.uniform(5_000_000, 5_000_000), integers(0, 1000)),
+                                     allConsumedAre(i -> i < 900));
+    StructureNode data = ((CounterExampleImpl<?>)e.getFailure().getMinimalCounterexample()).data;
+    int[] count = {0};
+    data.serialize(__ -> count[0]++);
+    assertTrue(String.valueOf(count[0]), count[0] < 100);
+  }
+
+  public void testLazyItemsAreShrunk() {
+    PropertyFailure<?> failure = checkFails(STABLE, streamsOf(integers(0, 100)).map(s -> s.iterator()), allConsumedAre(i -> i < 50)).getFailure();
+    failure.getMinimalCounterexample().replay();
+    assertEquals(Arrays.asList(50), consumed);
+  }
+
+  public void testRecheckingLazyItems() {
+    Generator<List<Object>> gen = from(data -> Arrays.asList(data.generate(integers(0, 10)), data.generate(iteratorsOf(integers(0, 100)))));
+    Predicate<List<Object>> property = l -> {
+      //noinspection unchecked
+      Iterator<Integer> it = (Iterator<Integer>)l.get(1);
+      return allConsumedAre(i -> i < 50 + (Integer)l.get(0)).test(it);
+    };
+    PropertyFailure.CounterExample<?> example = checkFails(STABLE, gen, property).getFailure().getMinimalCounterexample();
+    example.replay();
+    List<Integer> expected = new ArrayList<>(consumed);
+    assertFalse(expected.isEmpty());
+
+    checkFails(PropertyChecker.customized().rechecking(example.getSerializedData()), gen, property).getFailure().getFirstCounterExample().replay();
+    assertEquals(expected, consumed);
+  }
+
+  public void testConsumingDuringGenerationFails() {
+    Generator<Integer> gen = from(data -> data.generate(iteratorsOf(IntDistribution.uniform(1, 1), integers())).next());
+    try {
+      PropertyChecker.customized().silent().forAll(gen, i -> true);
+      fail();
+    }
+    catch (GeneratorException e) {
+      assertTrue(e.getCause() instanceof IllegalStateException);
+    }
+  }
+
+  public void testStreamsOf() {
+    PropertyChecker.forAll(streamsOf(integers(0, 10)), s -> s.collect(Collectors.toList()).stream().allMatch(i -> i <= 10));
+  }
+}
@@ -0,0 +1,56 @@
+package org.jetbrains.jetCheck;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+import static org.jetbrains.jetCheck.Generator.*;
+
+public class ParallelShrinkingTest extends PropertyCheckerTestCase {
+  private static final Generator<List<InsertChar>> INSERTIONS = from(data -> {
+    AtomicInteger modelLength = new AtomicInteger(0);
+    return data.generate(listsOf(from(cmdData -> {
+      int index = cmdData.generate(integers(0, modelLength.getAndIncrement()));
+      char c = cmdData.generate(asciiLetters());
+      return new InsertChar(c, index);
+    })));
+  });
+
+  public void testResultDoesNotDependOnThreadCount() {
+    Set<String> threads = ConcurrentHashMap.newKeySet();
+    Predicate<List<InsertChar>> property = cmds -> {
+      threads.add(Thread.currentThread().getName());
+      return !InsertChar.performOperations(cmds).contains("ab");
+    };
+    for (int seed = 0; seed < 10; seed++) {
+      //noinspection deprecation
+      PropertyChecker.Parameters parameters = PropertyChecker.customized().withSeed(seed);
+      CheckMetrics sequentialMetrics = new CheckMetrics();
+      CheckMetrics parallelMetrics = new CheckMetrics();
+      PropertyFailure<?> sequential = checkFails(parameters.withStatusListener(sequentialMetrics), INSERTIONS, property).getFailure();
+      PropertyFailure<?> parallel =
+        checkFails(parameters.withStatusListener(parallelMetrics).withShrinkingThreads(4), INSERTIONS, property).getFailure();
+
+      assertNull(parallel.getStoppingReason());
+      assertEquals(sequential.getMinimalCounterexample().getExampleValue().toString(),
+                   parallel.getMinimalCounterexample().getExampleValue().toString());
+      assertEquals(sequential.getTotalShrinkingExampleCount(), parallel.getTotalShrinkingExampleCount());
+      assertEquals(sequential.getShrinkingStageCount(), parallel.getShrinkingStageCount());
+      assertEquals(sequentialMetrics.getShrinkAttemptCount(), parallelMetrics.getShrinkAttemptCount());
+      assertEquals(sequentialMetrics.getAcceptedShrinkCount(), parallelMetrics.getAcceptedShrinkCount());
+      assertEquals(sequentialMetrics.getReplayFailureCount(), parallelMetrics.getReplayFailureCount());
+    }
+    assertTrue(threads.toString(), threads.contains("jetCheck shrinking"));
+  }
+
+  public void testInvalidThreadCount() {
+    try {
+      STABLE.withShrinkingThreads(0);
+      fail();
+    }
+    catch (IllegalArgumentException ignored) {
+    }
+  }
+}
@@ -0,0 +1,79 @@
+package org.jetbrains.jetCheck;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.jetbrains.jetCheck.Generator.*;
+
+public class PrimitiveGeneratorTest extends PropertyCheckerTestCase {
+
+  public void testPrimitiveAndBoxedGenerationRecordSameData() {
+    IntGenerator ints = ints(0, 1000);
+    LongGenerator longs = longs();
+    DoubleGenerator doubles = doubleValues();
+    Generator<List<Object>> boxed = from(data -> Arrays.asList(data.generate(ints), data.generate(longs), data.generate(doubles)));
+    Generator<List<Object>> primitive = from(data -> Arrays.asList(data.generateInt(ints), data.generateLong(longs), data.generateDouble(doubles)));
+
+    PropertyFailure.CounterExample<?> boxedExample = checkFails(STABLE, boxed.noShrink(), l -> false).getFailure().getMinimalCounterexample();
+    PropertyFailure.CounterExample<?> primitiveExample = checkFails(STABLE, primitive.noShrink(), l -> false).getFailure().getMinimalCounterexample();
+    assertEquals(boxedExample.getExampleValue(), primitiveExample.getExampleValue());
+    assertEquals(boxedExample.getSerializedData(), primitiveExample.getSerializedData());
+  }
+
+  public void testPrimitiveGenerationShrinks() {
+    Generator<Integer> sum = from(data -> data.generateInt(ints(0, 1000)) + data.generateInt(ints(0, 1000)));
+    assertEquals(1000, checkFails(STABLE, sum, s -> s < 1000).getBreakingValue());
+  }
+
+  public void testIntProperty() {
+    try {
+      STABLE.silent().forAllInts(ints().mapToInt(i -> i / 2), i -> i < 1_000_000);
+      fail();
+    }
+    catch (PropertyFalsified e) {
+      assertEquals(1_000_000, e.getFailure().getMinimalCounterexample().getExampleValue());
+    }
+  }
+
+  public void testLongsExceedIntRange() {
+    try {
+      STABLE.silent().forAllLongs(longs(), l -> l >= Integer.MIN_VALUE && l <= Integer.MAX_VALUE);
+      fail();
+    }
+    catch (PropertyFalsified e) {
+      long value = (Long)e.getBreakingValue();
+      assertTrue(String.valueOf(value), value > Integer.MAX_VALUE || value < Integer.MIN_VALUE);
+    }
+  }
+
+  public void testDoubleProperty() {
+    try {
+      STABLE.silent().forAllDoubles(doubleValues().mapToDouble(Math::abs), d -> !(d >= 1));
+      fail();
+    }
+    catch (PropertyFalsified e) {
+      assertTrue(e.getBreakingValue().toString(), (Double)e.getBreakingValue() >= 1);
+    }
+  }
+
+  public void testLongShrinksToExactThreshold() {
+    assertEquals(5_000_000_000L, (long)checkFails(STABLE, longs(), l -> l < 5_000_000_000L).getBreakingValue());
+    assertEquals(-5_000_000_000L, (long)checkFails(STABLE, longs(), l -> l > -5_000_000_000L).getBreakingValue());
+  }
+
+  public void testLongsInRange() {
+    assertEquals(1L << 40, (long)checkFails(STABLE, longs(1L << 40, 1L << 50), l -> false).getBreakingValue());
+    assertEquals(-1, (long)checkFails(STABLE, longs(Long.MIN_VALUE, -1), l -> false).getBreakingValue());
+  }
+
+  public void testDoublesShrinkToExactThreshold() {
+    assertEquals(1.0, checkFails(STABLE, doubles(), d -> !(d >= 1)).getBreakingValue());
+  }
+
+  public void testLongsRecheckFromSerializedData() {
+    Generator<List<Long>> gen = listsOf(longs());
+    PropertyFailure.CounterExample<?> example = checkFails(STABLE, gen, l -> l.stream().noneMatch(x -> x > 1L << 40)).getFailure().getMinimalCounterexample();
+    assertEquals(example.getExampleValue(),
+                 checkFails(PropertyChecker.customized().rechecking(example.getSerializedData()), gen, l -> false).getBreakingValue());
+  }
+}
@@ -0,0 +1,262 @@
+package org.jetbrains.jetCheck;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import static org.jetbrains.jetCheck.Generator.*;
+
+/**
+ * Compares the quality and the cost of shrinking with different {@link ShrinkPass} configurations on the problems
+ * known to be hard to shrink (following the "shrinking challenge" collection): for each problem and configuration,
+ * prints the average size of the minimal counterexample (in generated ints), the average sum of the absolute values of those ints,
+ * the number of property evaluations during shrinking, and the shrinking time, over a number of seeds.<p></p>
+ *
+ * Not a test, run it manually after {@code mvn test-compile}:
+ * {@code java -cp target/classes:target/test-classes org.jetbrains.jetCheck.ShrinkBenchmark [seedCount]}
+ */
+@SuppressWarnings("UseOfSystemOutOrSystemErr")
+public class ShrinkBenchmark {
+  private static final Map<String, ShrinkPass[]> CONFIGURATIONS = new LinkedHashMap<>();
+  static {
+    CONFIGURATIONS.put("default", ShrinkPass.DEFAULT_ORDER.toArray(new ShrinkPass[0]));
+    CONFIGURATIONS.put("all passes", ShrinkPass.values());
+    CONFIGURATIONS.put("structure only", new ShrinkPass[]{ShrinkPass.STRUCTURE});
+    for (ShrinkPass pass : ShrinkPass.values()) {
+      if (pass == ShrinkPass.STRUCTURE) continue;
+      boolean isDefault = ShrinkPass.DEFAULT_ORDER.contains(pass);
+      CONFIGURATIONS.put((isDefault ? "without " : "with ") + pass,
+                         Arrays.stream(ShrinkPass.values()).filter(p -> p == pass ? !isDefault : ShrinkPass.DEFAULT_ORDER.contains(p)).toArray(ShrinkPass[]::new));
+    }
+  }
+
+  public static void main(String[] args) {
+    int seedCount = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+    for (Problem<?> problem : problems()) {
+      System.out.println(problem.name);
+      System.out.println(String.format(Locale.ROOT, "%-28s %8s %10s %14s %12s %10s", "configuration", "found", "avg size", "avg magnitude", "avg evals", "avg ms"));
+      for (Map.Entry<String, ShrinkPass[]> configuration : CONFIGURATIONS.entrySet()) {
+        Result result = problem.run(configuration.getValue(), seedCount);
+        System.out.println(String.format(Locale.ROOT, "%-28s %8d %10.1f %14.1f %12.1f %10.2f",
+                                         configuration.getKey(), result.found,
+                                         result.average(result.totalSize), result.average(result.totalMagnitude),
+                                         result.average(result.totalEvaluations),
+                                         result.average(result.totalNanos) / 1_000_000));
+      }
+      System.out.println();
+    }
+  }
+
+  private static List<Problem<?>> problems() {
+    return Arrays.asList(
+      new Problem<>("bound5: 5 lists of shorts, each summing to less than 256, whose total overflows",
+                    from(data -> {
+                      List<List<Integer>> lists = new ArrayList<>();
+                      for (int i = 0; i < 5; i++) {
+                        lists.add(data.generate(listsOf(integers(Short.MIN_VALUE, Short.MAX_VALUE)).suchThat(l -> shortSum(l) < 256)));
+                      }
+                      return lists;
+                    }),
+                    lists -> shortSum(lists.stream().map(ShrinkBenchmark::shortSum).map(Integer::valueOf).collect(Collectors.toList())) < 5 * 256),
+      new Problem<>("large union: lists of lists with at most 4 distinct ints",
+                    listsOf(listsOf(integers())),
+                    lists -> lists.stream().flatMap(List::stream).distinct().count() <= 4),
+      new Problem<>("nested lists: lists of lists with at most 10 ints in total",
+                    listsOf(listsOf(integers())),
+                    lists -> lists.stream().mapToInt(List::size).sum() <= 10),
+      new Problem<>("reverse: lists equal to their reversal",
+                    listsOf(integers()),
+                    l -> {
+                      List<Integer> reversed = new ArrayList<>(l);
+                      Collections.reverse(reversed);
+                      return reversed.equals(l);
+                    }),
+      new Problem<>("calculator: expressions without literal zero divisors don't divide by zero",
+                    Expr.GENERATOR.suchThat(e -> !e.hasLiteralZeroDivisor()),
+                    e -> {
+                      try {
+                        e.evaluate();
+                        return true;
+                      }
+                      catch (ArithmeticException ex) {
+                        return false;
+                      }
+                    }),
+      new Problem<>("deletion: removing an item removes all its occurrences",
+                    from(data -> {
+                      List<Integer> list = data.generate(nonEmptyLists(integers(-10, 10)));
+                      return Arrays.asList(list, data.generate(integers(0, list.size() - 1)));
+                    }),
+                    pair -> {
+                      @SuppressWarnings("unchecked") List<Integer> list = new ArrayList<>((List<Integer>)pair.get(0));
+                      Integer removed = list.remove((int)(Integer)pair.get(1));
+                      return !list.contains(removed);
+                    }),
+      new Problem<>("distinct: lists with less than 3 distinct ints",
+                    listsOf(integers()),
+                    l -> l.stream().distinct().count() < 3),
+      new Problem<>("loop: lists built by a hand-written loop have at most one item above 50",
+                    from(data -> {
+                      List<Integer> list = new ArrayList<>();
+                      while (data.generate(booleans())) {
+                        list.add(data.generate(integers(0, 100)));
+                      }
+                      return list;
+                    }),
+                    l -> l.stream().filter(i -> i > 50).count() <= 1),
+      new Problem<>("threshold: lists of ints summing to less than 1000",
+                    listsOf(integers(0, 10_000)),
+                    l -> l.stream().mapToInt(Integer::intValue).sum() < 1000)
+    );
+  }
+
+  private static short shortSum(List<Integer> list) {
+    short sum = 0;
+    for (int i : list) {
+      sum += (short)i;
+    }
+    return sum;
+  }
+
+  private static class Problem<T> {
+    final String name;
+    final Generator<T> generator;
+    final Predicate<T> property;
+
+    Problem(String name, Generator<T> generator, Predicate<T> property) {
+      this.name = name;
+      this.generator = generator;
+      this.property = property;
+    }
+
+    Result run(ShrinkPass[] passes, int seedCount) {
+      Result result = new Result();
+      for (int seed = 0; seed < seedCount; seed++) {
+        AtomicBoolean failed = new AtomicBoolean();
+        AtomicInteger evaluations = new AtomicInteger();
+        Predicate<T> counting = value -> {
+          if (failed.get()) evaluations.incrementAndGet();
+          boolean success = property.test(value);
+          if (!success) failed.set(true);
+          return success;
+        };
+        try {
+          //noinspection deprecation
+          PropertyChecker.customized().withSeed(seed).silent().withShrinkPasses(passes).forAll(generator, counting);
+        }
+        catch (PropertyFalsified e) {
+          PropertyFailure<?> failure = e.getFailure();
+          long[] size = {0, 0};
+          ((CounterExampleImpl<?>)failure.getMinimalCounterexample()).data.serialize(n -> {
+            size[0]++;
+            size[1] += Math.abs(n);
+          });
+          result.found++;
+          result.totalSize += size[0];
+          result.totalMagnitude += size[1];
+          result.totalEvaluations += evaluations.get();
+          result.totalNanos += failure.getShrinkPassStatistics().stream().mapToLong(PropertyFailure.ShrinkPassStatistics::getTimeNanos).sum();
+        }
+      }
+      return result;
+    }
+  }
+
+  private static class Result {
+    int found;
+    long totalSize;
+    double totalMagnitude;
+    long totalEvaluations;
+    double totalNanos;
+
+    double average(double total) {
+      return found == 0 ? 0 : total / found;
+    }
+  }
+
+  private abstract static class Expr {
+    static final Generator<Expr> GENERATOR = recursive(exprs -> frequency(
+      3, integers(-10, 10).map(Literal::new),
+      1, zipWith(exprs, exprs, Add::new),
+      1, zipWith(exprs, exprs, Div::new)));
+
+    abstract int evaluate();
+
+    abstract boolean hasLiteralZeroDivisor();
+  }
+
+  private static class Literal extends Expr {
+    final int value;
+
+    Literal(int value) {
+      this.value = value;
+    }
+
+    @Override
+    int evaluate() {
+      return value;
+    }
+
+    @Override
+    boolean hasLiteralZeroDivisor() {
+      return false;
+    }
+
+    @Override
+    public String toString() {
+      return String.valueOf(value);
+    }
+  }
+
+  private static class Add extends Expr {
+    final Expr left;
+    final Expr right;
+
+    Add(Expr left, Expr right) {
+      this.left = left;
+      this.right = right;
+    }
+
+    @Override
+    int evaluate() {
+      return left.evaluate() + right.evaluate();
+    }
+
+    @Override
+    boolean hasLiteralZeroDivisor() {
+      return left.hasLiteralZeroDivisor() || right.hasLiteralZeroDivisor();
+    }
+
+    @Override
+    public String toString() {
+      return "(" + left + " + " + right + ")";
+    }
+  }
+
+  private static class Div extends Expr {
+    final Expr left;
+    final Expr right;
+
+    Div(Expr left, Expr right) {
+      this.left = left;
+      this.right = right;
+    }
+
+    @Override
+    int evaluate() {
+      return left.evaluate() / right.evaluate();
+    }
+
+    @Override
+    boolean hasLiteralZeroDivisor() {
+      return right instanceof Literal && ((Literal)right).value == 0 || left.hasLiteralZeroDivisor() || right.hasLiteralZeroDivisor();
+    }
+
+    @Override
+    public String toString() {
+      return "(" + left + " / " + right + ")";
+    }
+  }
+}
@@ -0,0 +1,57 @@
+package org.jetbrains.jetCheck;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.jetbrains.jetCheck.Generator.*;
+
+public class ShrinkPassTest extends PropertyCheckerTestCase {
+  private static final Generator<List<Integer>> HAND_WRITTEN_LISTS = from(data -> {
+    List<Integer> result = new ArrayList<>();
+    while (data.generate(booleans())) {
+      result.add(data.generate(integers(0, 100)));
+    }
+    return result;
+  });
+
+  public void testStatisticsAddUp() {
+    List<ShrinkPass> passes = Arrays.asList(ShrinkPass.STRUCTURE, ShrinkPass.DUPLICATES, ShrinkPass.REMOVE_CHUNKS);
+    PropertyFailure<?> failure = checkFails(STABLE.withShrinkPasses(passes.toArray(new ShrinkPass[0])), HAND_WRITTEN_LISTS, l -> !l.contains(42)).getFailure();
+    List<PropertyFailure.ShrinkPassStatistics> statistics = failure.getShrinkPassStatistics();
+    assertEquals(passes, statistics.stream().map(PropertyFailure.ShrinkPassStatistics::getPass).collect(Collectors.toList()));
+    assertEquals(failure.getTotalShrinkingExampleCount(), statistics.stream().mapToInt(PropertyFailure.ShrinkPassStatistics::getAttemptCount).sum());
+    assertEquals(failure.getShrinkingStageCount(), statistics.stream().mapToInt(PropertyFailure.ShrinkPassStatistics::getAcceptedCount).sum());
+    assertTrue(statistics.get(2).getAcceptedCount() > 0);
+  }
+
+  public void testOmittedPassesAreNotRun() {
+    PropertyFailure<?> failure = checkFails(STABLE.withShrinkPasses(ShrinkPass.STRUCTURE), HAND_WRITTEN_LISTS, l -> !l.contains(42)).getFailure();
+    assertEquals(1, failure.getShrinkPassStatistics().size());
+    assertFalse(Collections.singletonList(42).equals(failure.getMinimalCounterexample().getExampleValue()));
+  }
+
+  public void testCustomOrder() {
+    PropertyFailure<?> failure = checkFails(STABLE.withShrinkPasses(ShrinkPass.REMOVE_CHUNKS, ShrinkPass.STRUCTURE),
+                                            HAND_WRITTEN_LISTS, l -> !l.contains(42)).getFailure();
+    assertEquals(ShrinkPass.REMOVE_CHUNKS, failure.getShrinkPassStatistics().get(0).getPass());
+    assertEquals(Collections.singletonList(42), failure.getMinimalCounterexample().getExampleValue());
+  }
+
+  public void testInvalidPassLists() {
+    try {
+      STABLE.withShrinkPasses();
+      fail();
+    }
+    catch (IllegalArgumentException ignored) {
+    }
+    try {
+      STABLE.withShrinkPasses(ShrinkPass.STRUCTURE, ShrinkPass.DUPLICATES, ShrinkPass.STRUCTURE);
+      fail();
+    }
+    catch (IllegalArgumentException ignored) {
+    }
+  }
+}
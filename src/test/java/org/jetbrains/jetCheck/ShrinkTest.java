@@ -3,7 +3,9 @@
  */
 package org.jetbrains.jetCheck;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -22,13 +24,13 @@ public class ShrinkTest extends PropertyCheckerTestCase {
                      String s = l.toString();
                      return !"abcdefghijklmnopqrstuvwxyz()[]#!".chars().allMatch(c -> s.indexOf((char)c) >= 0);
                    },
-                   308);
+                   348);
   }
 
   public void testShrinkingNonEmptyList() {
     List<Integer> list = checkGeneratesExample(nonEmptyLists(integers(0, 100)),
                                                l -> l.contains(42),
-                                               6);
+                                               7);
     assertEquals(1, list.size());
   }
 
@@ -66,7 +68,7 @@ public class ShrinkTest extends PropertyCheckerTestCase {
         return false;
       }
       return true;
-    }, 3);
+    }, 4);
   }
 
   public void testNotAllDataIsConsumedAfterShrinking_2() {
@@ -91,4 +93,94 @@ public class ShrinkTest extends PropertyCheckerTestCase {
       assertEquals(-1, fails.getBreakingValue());
     }
   }
+
+  public void testIntegerThresholdIsFoundExactly() {
+    PropertyFailure<Integer> failure = checkFalsified(integers(0, Integer.MAX_VALUE), i -> i < 1_000_000, 32);
+    assertEquals(1_000_000, failure.getMinimalCounterexample().getExampleValue().intValue());
+  }
+
+  public void testThresholdIsFoundExactlyAboveDistributionMinimum() {
+    for (int i = 0; i < 20; i++) {
+      //noinspection deprecation
+      PropertyFalsified fails = checkFails(PropertyChecker.customized().withSeed(i), integers(500, 100_000), j -> j < 7777);
+      assertEquals(7777, fails.getBreakingValue());
+    }
+  }
+
+  public void testElementsOfHandWrittenLoopsAreRemoved() {
+    Generator<List<Integer>> gen = from(data -> {
+      List<Integer> result = new ArrayList<>();
+      while (data.generate(booleans())) {
+        result.add(data.generate(integers(0, 100)));
+      }
+      return result;
+    });
+    for (int i = 0; i < 20; i++) {
+      //noinspection deprecation
+      PropertyFalsified fails = checkFails(PropertyChecker.customized().withSeed(i).withShrinkPasses(ShrinkPass.STRUCTURE, ShrinkPass.REMOVE_CHUNKS),
+                                           gen, l -> !l.contains(42));
+      assertEquals(Collections.singletonList(42), fails.getBreakingValue());
+    }
+  }
+
+  public void testListItemsComeOutSorted() {
+    for (int i = 0; i < 20; i++) {
+      //noinspection deprecation
+      PropertyFalsified fails = checkFails(PropertyChecker.customized().withSeed(i).withShrinkPasses(ShrinkPass.values()),
+                                           listsOf(integers(0, 100)), l -> !(l.contains(5) && l.contains(7)));
+      assertEquals(Arrays.asList(5, 7), fails.getBreakingValue());
+    }
+  }
+
+  public void testEqualValuesAreShrunkTogether() {
+    for (int i = 0; i < 20; i++) {
+      //noinspection deprecation
+      PropertyFalsified fails = checkFails(PropertyChecker.customized().withSeed(i), listsOf(integers(0, 1000)), l -> {
+        Set<Integer> seen = new HashSet<>();
+        return l.stream().noneMatch(j -> j >= 100 && !seen.add(j));
+      });
+      assertEquals(Arrays.asList(100, 100), fails.getBreakingValue());
+    }
+  }
+
+  public void testEqualLongsAreShrunkTogether() {
+    for (int i = 0; i < 20; i++) {
+      //noinspection deprecation
+      PropertyFalsified fails = checkFails(PropertyChecker.customized().withSeed(i), listsOf(longs(0, 1000)), l -> {
+        Set<Long> seen = new HashSet<>();
+        return l.stream().noneMatch(j -> j >= 100 && !seen.add(j));
+      });
+      assertEquals(Arrays.asList(100L, 100L), fails.getBreakingValue());
+    }
+  }
+
+  public void testEqualStringsAreShrunkTogether() {
+    for (int i = 0; i < 20; i++) {
+      //noinspection deprecation
+      PropertyFalsified fails = checkFails(PropertyChecker.customized().withSeed(i), listsOf(stringsOf("xyz")), l -> {
+        Set<String> seen = new HashSet<>();
+        return l.stream().noneMatch(s -> s.length() >= 2 && !seen.add(s));
+      });
+      assertEquals(Arrays.asList("xx", "xx"), fails.getBreakingValue());
+    }
+  }
+
+  public void testReplayContinuesAfterNestedGeneratorThrows() {
+    Generator<List<Integer>> gen = from(data -> {
+      List<Integer> result = new ArrayList<>();
+      try {
+        result.add(data.generate(from(inner -> {
+          int i = inner.generate(integers(0, 100));
+          if (i > 50) throw new IllegalStateException();
+          return i;
+        })));
+      }
+      catch (IllegalStateException e) {
+        result.add(-1);
+      }
+      result.add(data.generate(integers(0, 100)));
+      return result;
+    });
+    assertEquals(Arrays.asList(-1, 10), checkFails(STABLE, gen, l -> l.get(0) >= 0 || l.get(1) < 10).getBreakingValue());
+  }
 }
@@ -0,0 +1,102 @@
+package org.jetbrains.jetCheck;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.jetbrains.jetCheck.Generator.*;
+
+public class StatusListenerTest extends PropertyCheckerTestCase {
+
+  public void testSuccessfulCheckReportsEveryIteration() {
+    List<String> events = new ArrayList<>();
+    STABLE.silent().withIterationCount(10).withStatusListener(new StatusListener() {
+      @Override
+      public void iterationStarted(int iterationNumber) {
+        events.add("start " + iterationNumber);
+      }
+
+      @Override
+      public void iterationFinished(int iterationNumber, long durationNanos) {
+        assertTrue(durationNanos >= 0);
+        events.add("finish " + iterationNumber);
+      }
+    }).forAll(integers(), i -> true);
+
+    assertEquals(20, events.size());
+    assertEquals("start 1", events.get(0));
+    assertEquals("finish 1", events.get(1));
+    assertEquals("finish 10", events.get(19));
+  }
+
+  public void testIterationWithFailingGeneratorIsFinished() {
+    CheckMetrics metrics = new CheckMetrics();
+    int[] generated = {0};
+    try {
+      STABLE.silent().withStatusListener(metrics).forAll(from(data -> {
+        if (++generated[0] == 3) throw new IllegalStateException();
+        return data.generate(integers());
+      }), i -> true);
+      fail();
+    }
+    catch (GeneratorException ignored) {
+    }
+    assertEquals(3, metrics.getIterationCount());
+    assertEquals(3, metrics.getIterationLatency().getCount());
+  }
+
+  public void testMetricsOfFailingCheck() {
+    CheckMetrics metrics = new CheckMetrics();
+    PropertyFalsified e = checkFails(STABLE.withStatusListener(metrics), listsOf(integers(0, 100)), l -> !l.contains(42));
+    PropertyFailure<?> failure = e.getFailure();
+
+    assertEquals(failure.getIterationNumber(), metrics.getIterationCount());
+    assertEquals(1, metrics.getCounterExampleCount());
+    assertEquals(failure.getTotalShrinkingExampleCount(), metrics.getShrinkAttemptCount());
+    assertEquals(failure.getShrinkingStageCount(), metrics.getAcceptedShrinkCount());
+    assertEquals(metrics.getIterationCount(), metrics.getIterationLatency().getCount());
+    assertTrue(metrics.getShrinkAttemptLatency().getPercentileNanos(0.5) <= metrics.getShrinkAttemptLatency().getMaxNanos());
+
+    Map<String, Long> snapshot = metrics.snapshot();
+    assertEquals(Long.valueOf(metrics.getShrinkAttemptCount()), snapshot.get("shrink.attempts"));
+  }
+
+  public void testRejectedShrinkStepsAreNotReplayFailures() {
+    CheckMetrics metrics = new CheckMetrics();
+    checkFails(STABLE.withStatusListener(metrics), listsOf(integers(0, 100).suchThat(i -> i % 2 == 1)), l -> !l.contains(41));
+
+    assertTrue(metrics.getShrinkAttemptCount() > metrics.getAcceptedShrinkCount());
+    assertEquals(0, metrics.getReplayFailureCount());
+  }
+
+  public void testDiscardedValuesAreReported() {
+    CheckMetrics metrics = new CheckMetrics();
+    List<StatusListener.DiscardReason> reasons = new ArrayList<>();
+    STABLE.silent().withStatusListener(metrics).withStatusListener(new StatusListener() {
+      @Override
+      public void generationDiscarded(int iterationNumber, @NotNull DiscardReason reason) {
+        reasons.add(reason);
+      }
+    }).withIterationCount(6).forAll(integers(0, 5), i -> true);
+
+    assertFalse(reasons.isEmpty());
+    assertTrue(reasons.stream().allMatch(r -> r == StatusListener.DiscardReason.DUPLICATE));
+    assertEquals(reasons.size(), metrics.getDiscardCount(StatusListener.DiscardReason.DUPLICATE));
+    assertTrue(metrics.getDiscardRate() > 0);
+  }
+
+  public void testLatencyHistogramPercentiles() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (int i = 1; i <= 100; i++) {
+      histogram.record(i * 1000);
+    }
+    assertEquals(100, histogram.getCount());
+    assertEquals(100_000, histogram.getMaxNanos());
+    assertEquals(50_500, histogram.getMeanNanos());
+    long median = histogram.getPercentileNanos(0.5);
+    assertTrue(String.valueOf(median), median >= 50_000 && median < 100_000);
+    assertEquals(100_000, histogram.getPercentileNanos(1));
+  }
+}
@@ -0,0 +1,41 @@
+package org.jetbrains.jetCheck;
+
+import static org.jetbrains.jetCheck.Generator.*;
+
+public class StringGeneratorTest extends PropertyCheckerTestCase {
+
+  public void testStringShrinksToSimplestCodePoints() {
+    assertEquals("aab", checkFails(STABLE, strings('a', 'z'), s -> !s.matches(".*b.*") || s.length() < 3).getBreakingValue());
+  }
+
+  public void testUnicodeStringsAreWellFormed() {
+    PropertyChecker.forAll(unicodeStrings(), s -> {
+      for (int i = 0; i < s.length(); i++) {
+        char c = s.charAt(i);
+        if (Character.isHighSurrogate(c)) {
+          if (i + 1 >= s.length() || !Character.isLowSurrogate(s.charAt(i + 1))) return false;
+          i++;
+        }
+        else if (Character.isLowSurrogate(c)) {
+          return false;
+        }
+      }
+      return true;
+    });
+  }
+
+  public void testSupplementaryCharactersAreShrunkWhole() {
+    PropertyChecker.forAll(strings(0x1F600, 0x1F64F), s -> s.codePoints().allMatch(c -> c >= 0x1F600 && c <= 0x1F64F));
+    String example = (String)checkFails(STABLE, strings(0x1F600, 0x1F64F), s -> s.codePointCount(0, s.length()) < 2).getBreakingValue();
+    assertEquals("\uD83D\uDE00\uD83D\uDE00", example);
+  }
+
+  public void testCodePointRangeAroundSurrogates() {
+    int min = Character.MIN_SURROGATE - 2;
+    int max = Character.MAX_SURROGATE + 2;
+    PropertyChecker.forAll(strings(IntDistribution.uniform(1, 100), min, max),
+                           s -> s.codePoints().allMatch(c -> c >= min && c <= max && (c < Character.MIN_SURROGATE || c > Character.MAX_SURROGATE)));
+    assertEquals(Character.MAX_SURROGATE + 1,
+                 checkFails(STABLE, strings(Character.MIN_SURROGATE, max), s -> s.isEmpty()).getBreakingValue().toString().codePointAt(0));
+  }
+}
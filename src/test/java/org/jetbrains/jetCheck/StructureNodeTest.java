@@ -0,0 +1,89 @@
+package org.jetbrains.jetCheck;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class StructureNodeTest extends TestCase {
+  private static final IntDistribution DISTRIBUTION = IntDistribution.uniform(-1, 100_000);
+
+  public void testChildVectorMatchesSourceList() {
+    for (int size : new int[]{0, 1, 31, 32, 33, 1024, 1025, 40_000}) {
+      List<StructureElement> source = createNode(size).children;
+      ChildVector vector = ChildVector.of(source);
+      assertEquals(source, vector);
+      for (int index : new int[]{0, size / 2, size - 1}) {
+        if (index < 0 || index >= size) continue;
+        IntData replacement = new IntData(source.get(index).id, -1, DISTRIBUTION);
+        List<StructureElement> expected = new ArrayList<>(source);
+        expected.set(index, replacement);
+        assertEquals(expected, vector.with(index, replacement));
+        assertEquals(source, vector);
+      }
+    }
+  }
+
+  public void testReplaceSharesUnchangedChildren() {
+    StructureNode root = createNode(10_000);
+    NodeId id = root.children.get(5_000).id;
+    StructureNode replaced = root.replace(id, new IntData(id, -1, DISTRIBUTION));
+
+    assertEquals(-1, ((IntData)replaced.findChildById(id)).value);
+    assertEquals(5_000, ((IntData)root.findChildById(id)).value);
+    for (int i = 0; i < root.children.size(); i++) {
+      if (i != 5_000) assertSame(root.children.get(i), replaced.children.get(i));
+    }
+
+    NodeId last = root.children.get(9_999).id;
+    StructureNode replacedTwice = replaced.replace(last, new IntData(last, -1, DISTRIBUTION));
+    assertEquals(-1, ((IntData)replacedTwice.findChildById(id)).value);
+    assertEquals(-1, ((IntData)replacedTwice.findChildById(last)).value);
+    assertEquals(9_999, ((IntData)replaced.findChildById(last)).value);
+  }
+
+  public void testGeneratedStructuresReplaceByPathCopying() {
+    StructureNode root = new StructureNode(new NodeId());
+    IntSource source = distribution -> distribution.getMax();
+    GenerativeDataStructure data = new GenerativeDataStructure(source, root, 100, PropertyChecker.DEFAULT_MAX_GENERATION_DEPTH, null, null);
+    data.generate(Generator.listsOf(IntDistribution.uniform(5_000, 5_000), Generator.integers(0, 10)));
+    StructureNode list = (StructureNode)root.children.get(0);
+    assertTrue(list.children instanceof ChildVector);
+    assertEquals(5_001, list.children.size());
+
+    NodeId first = ((StructureNode)list.children.get(1)).children.get(0).id;
+    NodeId last = ((StructureNode)list.children.get(5_000)).children.get(0).id;
+    StructureNode replaced = root.replace(first, new IntData(first, 0, DISTRIBUTION));
+    StructureNode replacedTwice = replaced.replace(last, new IntData(last, 0, DISTRIBUTION));
+    ChildVector once = (ChildVector)((StructureNode)replaced.children.get(0)).children;
+    ChildVector twice = (ChildVector)((StructureNode)replacedTwice.children.get(0)).children;
+    assertTrue(once.sharesLeafWith((ChildVector)list.children, 5_000));
+    assertTrue(twice.sharesLeafWith(once, 1));
+    assertTrue(twice.sharesLeafWith(once, 2_500));
+    assertFalse(twice.sharesLeafWith(once, 5_000));
+  }
+
+  public void testFindChildInNestedStructures() {
+    StructureNode root = new StructureNode(new NodeId());
+    List<NodeId> ints = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      StructureNode child = root.subStructure(Generator.integers());
+      for (int j = 0; j < i % 5; j++) {
+        IntData data = new IntData(child.id.childId(null), i, DISTRIBUTION);
+        child.addChild(data);
+        ints.add(data.id);
+      }
+    }
+    for (NodeId id : ints) {
+      assertSame(id, root.findChildById(id).id);
+    }
+  }
+
+  private static StructureNode createNode(int size) {
+    StructureNode node = new StructureNode(new NodeId());
+    for (int i = 0; i < size; i++) {
+      node.addChild(new IntData(node.id.childId(null), i, DISTRIBUTION));
+    }
+    return node;
+  }
+}
@@ -27,12 +27,12 @@ public class SubSequenceTest extends PropertyCheckerTestCase{
   @Parameterized.Parameters(name = "{0}")
   public static Collection data() {
     return Arrays.asList(
-      new Object[]{"abcde", 174},
-      new Object[]{"abcdef", 188},
-      new Object[]{"sadf", 74},
-      new Object[]{"asdf", 178},
-      new Object[]{"xxx", 61},
-      new Object[]{"AA", 63}
+      new Object[]{"abcde", 178},
+      new Object[]{"abcdef", 192},
+      new Object[]{"sadf", 78},
+      new Object[]{"asdf", 183},
+      new Object[]{"xxx", 65},
+      new Object[]{"AA", 66}
     );
   }
 
@@ -0,0 +1,41 @@
+package org.jetbrains.jetCheck;
+
+import java.util.*;
+
+import static org.jetbrains.jetCheck.Generator.*;
+
+public class UniqueCollectionsTest extends PropertyCheckerTestCase {
+
+  public void testLargeSetsHavePlannedSize() {
+    PropertyChecker.customized().withIterationCount(10).forAll(setsOf(IntDistribution.uniform(10_000, 10_000), integers(0, 100_000)),
+                                                               s -> s.size() == 10_000);
+  }
+
+  public void testSetsOfFewDistinctValuesEndEarly() {
+    Set<Integer> sizes = new HashSet<>();
+    PropertyChecker.forAll(setsOf(IntDistribution.uniform(0, 20), integers(0, 4)), s -> sizes.add(s.size()) || s.size() <= 5);
+    assertTrue(sizes.toString(), sizes.contains(5));
+  }
+
+  public void testUniqueListsHaveDistinctItems() {
+    PropertyChecker.forAll(uniqueListsOf(integers(0, 50)), l -> new HashSet<>(l).size() == l.size());
+  }
+
+  public void testSetShrinksByRemovingElements() {
+    Set<Integer> example = checkGeneratesExample(setsOf(integers()), s -> s.size() >= 3, 73);
+    assertEquals(3, example.size());
+  }
+
+  public void testMapShrinking() {
+    Map<Integer, Integer> example = checkGeneratesExample(mapsOf(integers(0, 100), integers(0, 100)),
+                                                          m -> m.values().stream().anyMatch(v -> v >= 50), 13);
+    assertEquals(Collections.singletonMap(0, 50), example);
+  }
+
+  public void testRecheckingSetThatEndedEarly() {
+    Generator<Set<Integer>> gen = setsOf(IntDistribution.uniform(0, 20), integers(0, 4));
+    PropertyFailure.CounterExample<?> example = checkFails(STABLE, gen, s -> s.size() < 5).getFailure().getMinimalCounterexample();
+    assertEquals(example.getExampleValue(),
+                 checkFails(PropertyChecker.customized().rechecking(example.getSerializedData()), gen, s -> false).getBreakingValue());
+  }
+}
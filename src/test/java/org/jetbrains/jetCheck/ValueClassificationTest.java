@@ -0,0 +1,89 @@
+package org.jetbrains.jetCheck;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.jetbrains.jetCheck.Generator.*;
+
+public class ValueClassificationTest extends PropertyCheckerTestCase {
+
+  private static <T> Generator<List<T>> classifiedLists(Generator<T> items) {
+    return from(data -> {
+      List<T> list = data.generate(listsOf(items));
+      if (list.isEmpty()) data.classify("empty");
+      data.collect("size", list.size());
+      return list;
+    });
+  }
+
+  public void testBuckets() {
+    assertEquals("n: 0", ValueClassification.bucketLabel("n", 0));
+    assertEquals("n: 1", ValueClassification.bucketLabel("n", 1));
+    assertEquals("n: 2..3", ValueClassification.bucketLabel("n", 3));
+    assertEquals("n: 4..7", ValueClassification.bucketLabel("n", 4));
+    assertEquals("n: -7..-4", ValueClassification.bucketLabel("n", -5));
+    assertEquals("n: 1073741824..2147483647", ValueClassification.bucketLabel("n", Integer.MAX_VALUE));
+    assertEquals("n: -4294967295..-2147483648", ValueClassification.bucketLabel("n", Integer.MIN_VALUE));
+  }
+
+  public void testLabelsAreCountedOncePerValue() {
+    ValueClassification classification = new ValueClassification();
+    classification.valueChecked(Arrays.asList("a", "a", "b"));
+    classification.valueChecked(Collections.singletonList("a"));
+    assertEquals(100.0, classification.getPercentage("a"));
+    assertEquals(50.0, classification.getPercentage("b"));
+    assertEquals(0.0, classification.getPercentage("c"));
+  }
+
+  public void testReportIsSortedByBuckets() {
+    ValueClassification classification = new ValueClassification();
+    for (int i = 0; i < 20; i++) {
+      classification.valueChecked(Collections.singletonList(ValueClassification.bucketLabel("size", i)));
+    }
+    String report = classification.getReport();
+    assertTrue(report, report.indexOf("size: 2..3") < report.indexOf("size: 16..31"));
+    assertTrue(report, report.contains("20 checked values"));
+  }
+
+  public void testRejectedValuesAreNotClassified() {
+    Generator<Integer> classified = from(d -> {
+      int i = d.generate(integers(0, 9));
+      d.classify(String.valueOf(i));
+      return i;
+    });
+    Random random = new Random(0);
+    GenerativeDataStructure data = new GenerativeDataStructure(d -> d.generateInt(random), new StructureNode(new NodeId()), 10, 100, null, null);
+    data.generate(classified.suchThat(i -> i == 5));
+    assertEquals(Collections.singletonList("5"), data.getLabels());
+  }
+
+  public void testCoverageRequirementMet() {
+    STABLE.silent().withCoverage("empty", 1).withCoverage("size: 4..7", 10).forAll(classifiedLists(integers()), l -> true);
+  }
+
+  public void testUnreachableCoverageFails() {
+    try {
+      STABLE.silent().withIterationCount(10).withCoverage("size: 1024..2047", 1).forAll(classifiedLists(integers()), l -> true);
+      fail();
+    }
+    catch (InsufficientCoverage e) {
+      assertTrue(e.getMessage(), e.getMessage().startsWith("Insufficient coverage after 100 iterations: 'size: 1024..2047' covers only 0.0%"));
+    }
+  }
+
+  public void testCheckContinuesUntilCoverageIsMet() {
+    Generator<Integer> bits = from(d -> {
+      int i = d.generate(integers(0, 1));
+      d.classify(String.valueOf(i));
+      return i;
+    });
+    int[] iterations = {0};
+    STABLE.silent().withIterationCount(1).withCoverage("0", 40).withCoverage("1", 40).forAll(bits, i -> {
+      iterations[0]++;
+      return true;
+    });
+    assertEquals(2, iterations[0]);
+  }
+}